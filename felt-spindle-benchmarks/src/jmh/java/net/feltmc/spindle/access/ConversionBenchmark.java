@@ -0,0 +1,77 @@
+package net.feltmc.spindle.access;
+
+import net.feltmc.spindle.fixtures.Fixtures;
+import net.feltmc.spindle.mapping.MappingCache;
+import net.feltmc.spindle.mapping.Mappings;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converts a generated access transformer into access widener entries from scratch, with an empty
+ * resolution cache. The mapping snapshot is written by the first invocation and opened by the rest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ConversionBenchmark {
+	
+	@Param("10000")
+	public int lines;
+	
+	private Path dir;
+	private Mappings.Sources sources;
+	private MappingCache cache;
+	private List<String> accessTransformer;
+	
+	@Setup
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("spindle-conversion");
+		sources = Fixtures.writeSources(dir.resolve("sources"));
+		cache = new MappingCache(dir.resolve("cache"), false);
+		accessTransformer = Fixtures.accessTransformer(lines);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		Fixtures.delete(dir);
+	}
+	
+	@Benchmark
+	public String convert() throws IOException {
+		final Set<String> unresolved = new LinkedHashSet<>();
+		for (String line : accessTransformer) {
+			final String content = AccessTransformerConverter.content(line);
+			if (!AccessTransformerConverter.isClassEntry(content))
+				unresolved.add(content);
+		}
+		
+		final AccessTransformerConverter converter = new AccessTransformerConverter(() -> new Mappings(sources, cache, Mappings.Pruning.ACCESS_TRANSFORMER));
+		final List<String> toResolve = List.copyOf(unresolved);
+		final List<List<String>> results = converter.convertAll(toResolve);
+		final Map<String, List<String>> resolved = new HashMap<>();
+		for (int i = 0; i < toResolve.size(); i++)
+			resolved.put(toResolve.get(i), results.get(i));
+		
+		final AccessWidenerModel model = new AccessWidenerModel();
+		for (String line : accessTransformer) {
+			final String content = AccessTransformerConverter.content(line);
+			final List<String> converted = AccessTransformerConverter.isClassEntry(content) ? converter.convert(content) : resolved.get(content);
+			model.add(converted, List.of("# " + line));
+		}
+		
+		final StringWriter out = new StringWriter();
+		try (BufferedWriter writer = new BufferedWriter(out)) {
+			model.write(writer);
+		}
+		
+		return out.toString();
+	}
+	
+}
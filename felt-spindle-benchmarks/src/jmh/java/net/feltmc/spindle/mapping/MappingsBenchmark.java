@@ -0,0 +1,77 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.feltmc.spindle.fixtures.Fixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks names up in the merged mappings the way the AT conversion does, cycling through all classes so
+ * no single lookup stays hot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MappingsBenchmark {
+	
+	private Path dir;
+	private Mappings mappings;
+	private final String[] classNames = new String[Fixtures.CLASSES];
+	private final MappingTreeView.ClassMappingView[] classes = new MappingTreeView.ClassMappingView[Fixtures.CLASSES];
+	private final String[] fieldNames = new String[Fixtures.CLASSES];
+	private final String[] methodNames = new String[Fixtures.CLASSES];
+	private final String[] methodDescs = new String[Fixtures.CLASSES];
+	private int next;
+	
+	@Setup
+	public void setUp() throws IOException {
+		dir = Files.createTempDirectory("spindle-mappings");
+		mappings = new Mappings(Fixtures.writeSources(dir.resolve("sources")), new MappingCache(dir.resolve("cache"), false));
+		
+		for (int c = 0; c < Fixtures.CLASSES; c++) {
+			classNames[c] = Fixtures.namedClass(c);
+			classes[c] = mappings.findClass(classNames[c], Mappings.Namespace.MERGED);
+			fieldNames[c] = Fixtures.srgField(c, c % Fixtures.FIELDS);
+			methodNames[c] = Fixtures.srgMethod(c, c % Fixtures.METHODS);
+			// the SRG class names are the named ones
+			methodDescs[c] = Fixtures.namedMethodDesc(c, c % Fixtures.METHODS);
+		}
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		Fixtures.delete(dir);
+	}
+	
+	private int nextClass() {
+		next = (next + 7919) % Fixtures.CLASSES;
+		return next;
+	}
+	
+	@Benchmark
+	public MappingTreeView.ClassMappingView findClass() {
+		return mappings.findClass(classNames[nextClass()], Mappings.Namespace.MERGED);
+	}
+	
+	@Benchmark
+	public MappingTreeView.FieldMappingView findField() {
+		final int c = nextClass();
+		return mappings.findField(classes[c], fieldNames[c], Mappings.Namespace.SRG);
+	}
+	
+	@Benchmark
+	public MappingTreeView.MethodMappingView findMethod() {
+		final int c = nextClass();
+		return mappings.findMethod(classes[c], methodNames[c], methodDescs[c], Mappings.Namespace.SRG);
+	}
+	
+	@Benchmark
+	public String mapSignature() {
+		return mappings.mapSignature(methodDescs[nextClass()], Mappings.Namespace.MERGED, Mappings.Namespace.SRG);
+	}
+	
+}
@@ -0,0 +1,68 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.adapter.MappingSourceNsSwitch;
+import net.fabricmc.mappingio.format.ProGuardReader;
+import net.fabricmc.mappingio.format.Tiny2Reader;
+import net.fabricmc.mappingio.format.TsrgReader;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import net.feltmc.spindle.fixtures.Fixtures;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the generated project mappings, SRG and mojmap trees into one, as a tree merge.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MergeBenchmark {
+	
+	private static final List<String> PRIORITY = List.of("named", "mojmap", "intermediary");
+	
+	private final List<MemoryMappingTree> sources = new ArrayList<>();
+	
+	@Setup
+	public void setUp() throws IOException {
+		final Path dir = Files.createTempDirectory("spindle-merge");
+		try {
+			final Path tiny = dir.resolve("mappings.tiny");
+			final Path tsrg = dir.resolve("joined.tsrg");
+			final Path proGuard = dir.resolve("client.txt");
+			Fixtures.writeTiny(tiny);
+			Fixtures.writeTsrg(tsrg);
+			Fixtures.writeProGuard(proGuard);
+			
+			for (Path file : List.of(tiny, tsrg, proGuard)) {
+				final MemoryMappingTree tree = new MemoryMappingTree();
+				try (Reader reader = Files.newBufferedReader(file)) {
+					if (file == tiny)
+						Tiny2Reader.read(reader, tree);
+					else if (file == tsrg)
+						TsrgReader.read(reader, tree);
+					else
+						ProGuardReader.read(reader, "mojmap", "obf", new MappingSourceNsSwitch(tree, "obf"));
+				}
+				sources.add(tree);
+			}
+		} finally {
+			Fixtures.delete(dir);
+		}
+	}
+	
+	@Benchmark
+	public MemoryMappingTree merge() throws IOException {
+		final MergingMappingVisitor.MergeTarget target = MergingMappingVisitor.begin("obf", List.of("srg", "mojmap", "intermediary", "named", "merged"));
+		for (MemoryMappingTree source : sources)
+			target.add(source);
+		
+		return target.finish("merged", PRIORITY);
+	}
+	
+}
@@ -0,0 +1,49 @@
+package net.feltmc.spindle.processors;
+
+import net.feltmc.spindle.fixtures.Fixtures;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adds a field and two methods to each of a batch of generated classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ClassOverlayBenchmark {
+	
+	@Param("1000")
+	public int classes;
+	
+	private byte[][] inputs;
+	private List<ClassOverlayProcessor.OverlayedClass>[] overlays;
+	
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		inputs = new byte[classes][];
+		overlays = new List[classes];
+		
+		for (int c = 0; c < classes; c++) {
+			final String name = Fixtures.namedClass(c);
+			inputs[c] = Fixtures.namedClassBytes(c);
+			overlays[c] = List.of(new ClassOverlayProcessor.OverlayedClass("benchmark", name, List.of(
+				new ClassOverlayProcessor.FieldOverlay("felt$data", Type.getType("Ljava/lang/Object;"), Opcodes.ACC_PUBLIC),
+				new ClassOverlayProcessor.MethodOverlay("felt$tick", Type.getMethodType("(JD[I)Z"), Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC),
+				new ClassOverlayProcessor.MethodOverlay("felt$move", Type.getMethodType("(L" + name + ";J)V"), Opcodes.ACC_PROTECTED))));
+		}
+	}
+	
+	@Benchmark
+	public void transform(Blackhole blackhole) {
+		for (int c = 0; c < classes; c++)
+			blackhole.consume(SpindleJarProcessor.transform(inputs[c], overlays[c], Map.of()));
+	}
+	
+}
@@ -12,10 +12,19 @@ public abstract class SpindleExtension {
 	@Optional
 	public abstract Property<Boolean> getOverwriteAccessWidener();
 	
+	/**
+	 * Whether the AT's comments and entries are copied into the access widener as comments, defaults to {@code true}.
+	 */
+	@Optional
+	public abstract Property<Boolean> getIncludeSourceComments();
+	
 //	@Optional
 //	public abstract Property<Boolean> getAutoConvertATToAW();
-//	
-//	@Optional
-//	public abstract Property<Boolean> getApplyATInDev();
+	
+	/**
+	 * Whether the access widener's spindle block is baked into the dev Minecraft jar, defaults to {@code false}.
+	 */
+	@Optional
+	public abstract Property<Boolean> getApplyATInDev();
 	
 }
@@ -2,32 +2,75 @@ package net.feltmc.spindle;
 
 import net.fabricmc.loom.LoomGradleExtension;
 import net.fabricmc.loom.api.LoomGradleExtensionAPI;
-import net.feltmc.spindle.processors.ClassOverlayProcessor;
+import net.fabricmc.loom.configuration.providers.minecraft.MinecraftVersionMeta;
+import net.feltmc.spindle.mapping.MappingsService;
+import net.feltmc.spindle.processors.SpindleJarProcessor;
 import net.feltmc.spindle.task.GenerateAccessWidenerFromTransformerTask;
+import net.feltmc.spindle.task.UpdateAccessWidenerTask;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.provider.Provider;
+
+import java.io.File;
 
 public class SpindlePlugin implements Plugin<Project> {
     
+    private static final String MAPPINGS_CACHE_PATH = "caches/felt-spindle/mappings";
+    private static final String OVERLAY_MANIFESTS_PATH = "felt-spindle";
+    private static final String RESOLUTION_CACHE_PATH = "spindle/at-resolution.bin";
+    private static final String ACCESS_WIDENER_FRAGMENT_PATH = "spindle/access-widener-fragment.txt";
+    private static final String MOJMAP_CLIENT_MAPPINGS = "client_mappings";
+    private static final String MOJMAP_SERVER_MAPPINGS = "server_mappings";
+    private static final int MAX_CONCURRENT_MAPPINGS_LOADS = 2;
+    
     public void apply(Project project) {
         final LoomGradleExtensionAPI loom = project.getExtensions().findByType(LoomGradleExtensionAPI.class);
         if (loom == null)
             throw new AssertionError("Fabric Loom not found!");
         
-        loom.addMinecraftJarProcessor(ClassOverlayProcessor.class, "felt-spindle:overlays");
-        
         var config = project.getExtensions().create("spindle", SpindleExtension.class);
         
-        project.getTasks().register("generateAccessWidenerFromTransformer", GenerateAccessWidenerFromTransformerTask.class, task -> {
-            task.getAccessWidenerPath().set(loom.getAccessWidenerPath());
+        // overlays and, with applyATInDev, the access changes, applied in a single pass over the jar
+        //noinspection UnstableApiUsage
+        loom.addMinecraftJarProcessor(SpindleJarProcessor.class, "felt-spindle:overlays", loom.getAccessWidenerPath(), config.getApplyATInDev(),
+                new File(((LoomGradleExtension) loom).getFiles().getProjectPersistentCache(), OVERLAY_MANIFESTS_PATH),
+                loom.getIntermediateMappingsProvider().getMinecraftVersion());
+        
+        // one instance per build, shared by every project applying the plugin
+        project.getGradle().getSharedServices().registerIfAbsent(MappingsService.NAME, MappingsService.class,
+                spec -> spec.getParameters().getMaxConcurrentLoads().set(MAX_CONCURRENT_MAPPINGS_LOADS));
+        
+        // only plain values end up in the task, which is what lets the configuration cache store it
+        final Provider<MinecraftVersionMeta.Download> mojMapClient = project.provider(() -> getVersionInfo(loom).download(MOJMAP_CLIENT_MAPPINGS));
+        final Provider<MinecraftVersionMeta.Download> mojMapServer = project.provider(() -> getVersionInfo(loom).download(MOJMAP_SERVER_MAPPINGS));
+        
+        final var generateAccessWidener = project.getTasks().register("generateAccessWidenerFromTransformer", GenerateAccessWidenerFromTransformerTask.class, task -> {
             task.getAccessTransformerPath().set(config.getAccessTransformerPath());
-            task.getProjectMappingsFile().set(loom::getMappingsFile);
+            task.getProjectMappingsFile().set(project.getLayout().file(project.provider(loom::getMappingsFile)));
             //noinspection UnstableApiUsage
             task.getMinecraftVersion().set(loom.getIntermediateMappingsProvider().getMinecraftVersion());
-            //noinspection UnstableApiUsage
-            task.getMinecraftVersionMeta().set(((LoomGradleExtension) loom).getMinecraftProvider().getVersionInfo());
+            task.getMojMapClientUrl().set(mojMapClient.map(MinecraftVersionMeta.Download::url));
+            task.getMojMapClientSha1().set(mojMapClient.map(MinecraftVersionMeta.Download::sha1));
+            task.getMojMapServerUrl().set(mojMapServer.map(MinecraftVersionMeta.Download::url));
+            task.getMojMapServerSha1().set(mojMapServer.map(MinecraftVersionMeta.Download::sha1));
+            task.getIncludeSourceComments().set(config.getIncludeSourceComments());
+            task.getAccessWidenerFragment().set(project.getLayout().getBuildDirectory().file(ACCESS_WIDENER_FRAGMENT_PATH));
+            task.getMappingsCacheDirectory().set(new File(project.getGradle().getGradleUserHomeDir(), MAPPINGS_CACHE_PATH));
+            task.getOffline().set(project.getGradle().getStartParameter().isOffline());
+            task.getResolutionCacheFile().set(project.getLayout().getBuildDirectory().file(RESOLUTION_CACHE_PATH));
+        });
+        
+        final var updateAccessWidener = project.getTasks().register("updateAccessWidener", UpdateAccessWidenerTask.class, task -> {
+            task.getAccessWidenerFragment().set(generateAccessWidener.flatMap(GenerateAccessWidenerFromTransformerTask::getAccessWidenerFragment));
+            task.getAccessWidenerPath().set(loom.getAccessWidenerPath());
             task.getOverwriteAccessWidener().set(config.getOverwriteAccessWidener());
         });
+        
+        generateAccessWidener.configure(task -> task.finalizedBy(updateAccessWidener));
+    }
+    
+    private static MinecraftVersionMeta getVersionInfo(LoomGradleExtensionAPI loom) {
+        return ((LoomGradleExtension) loom).getMinecraftProvider().getVersionInfo();
     }
     
 }
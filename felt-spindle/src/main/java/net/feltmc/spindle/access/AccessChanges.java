@@ -0,0 +1,147 @@
+package net.feltmc.spindle.access;
+
+import net.feltmc.spindle.access.AccessWidenerModel.Access;
+import net.feltmc.spindle.access.AccessWidenerModel.Kind;
+import net.feltmc.spindle.util.Checksum;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * Access widener entries grouped by the class they change, for applying them straight to a jar.
+ * <p>
+ * Transitivity only matters to mods depending on this one, so it's dropped here. Changes compare
+ * equal by their {@link #fingerprint()}, which doesn't depend on the order of the entries.
+ */
+public final class AccessChanges {
+	
+	private static final Set<Access> NONE = Collections.unmodifiableSet(EnumSet.noneOf(Access.class));
+	
+	public static final class ClassChanges {
+		
+		private final EnumSet<Access> access = EnumSet.noneOf(Access.class);
+		private final Map<String, EnumSet<Access>> fields = new HashMap<>();
+		private final Map<String, EnumSet<Access>> methods = new HashMap<>();
+		
+		public Set<Access> access() {
+			return access;
+		}
+		
+		public Set<Access> field(String name, String desc) {
+			final Set<Access> fieldAccess = fields.get(name + desc);
+			return fieldAccess == null ? NONE : fieldAccess;
+		}
+		
+		public Set<Access> method(String name, String desc) {
+			final Set<Access> methodAccess = methods.get(name + desc);
+			return methodAccess == null ? NONE : methodAccess;
+		}
+		
+	}
+	
+	private final Map<String, ClassChanges> classes = new HashMap<>();
+	private final SortedSet<String> entries = new TreeSet<>();
+	private String fingerprint;
+	
+	private AccessChanges() {
+	}
+	
+	/**
+	 * @param lines entries in the {@code [transitive-]<access> <kind> <owner> [<name> <desc>]} format,
+	 *              blank lines and comments are skipped
+	 */
+	public static AccessChanges parse(Collection<String> lines) {
+		final AccessChanges changes = new AccessChanges();
+		
+		for (String line : lines) {
+			final int commentStart = line.indexOf('#');
+			final String content = (commentStart == -1 ? line : line.substring(0, commentStart)).strip();
+			if (content.isEmpty())
+				continue;
+			
+			final String[] tokens = content.split("\\s+");
+			if (tokens.length < 3)
+				throw new IllegalArgumentException("Malformed access widener entry: " + line);
+			
+			final String accessName = tokens[0].startsWith("transitive-") ? tokens[0].substring("transitive-".length()) : tokens[0];
+			final Access access = AccessWidenerModel.access(accessName);
+			final Kind kind = AccessWidenerModel.kind(tokens[1]);
+			final ClassChanges classChanges = changes.classes.computeIfAbsent(tokens[2], x -> new ClassChanges());
+			
+			if (kind == Kind.CLASS) {
+				classChanges.access.add(access);
+				changes.entries.add(String.join(" ", accessName, tokens[1], tokens[2]));
+				continue;
+			}
+			
+			if (tokens.length < 5)
+				throw new IllegalArgumentException("Malformed access widener entry: " + line);
+			
+			final Map<String, EnumSet<Access>> members = kind == Kind.FIELD ? classChanges.fields : classChanges.methods;
+			members.computeIfAbsent(tokens[3] + tokens[4], x -> EnumSet.noneOf(Access.class)).add(access);
+			changes.entries.add(String.join(" ", accessName, tokens[1], tokens[2], tokens[3], tokens[4]));
+		}
+		
+		return changes;
+	}
+	
+	/**
+	 * Reads the entries of the access widener's {@code # spindle {} block.
+	 *
+	 * @return {@code null} if the access widener has no such block
+	 */
+	public static AccessChanges readSpindleBlock(Path accessWidener) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(accessWidener, StandardCharsets.UTF_8)) {
+			final List<String> lines = new ArrayList<>();
+			boolean inBlock = false;
+			String line;
+			
+			while ((line = reader.readLine()) != null) {
+				if (!inBlock) {
+					inBlock = line.matches(AccessWidenerModel.SPINDLE_BLOCK_START);
+				} else if (line.matches(AccessWidenerModel.SPINDLE_BLOCK_END)) {
+					return parse(lines);
+				} else {
+					lines.add(line);
+				}
+			}
+			
+			return null;
+		}
+	}
+	
+	public boolean isEmpty() {
+		return classes.isEmpty();
+	}
+	
+	public Map<String, ClassChanges> classes() {
+		return Collections.unmodifiableMap(classes);
+	}
+	
+	public String fingerprint() {
+		if (fingerprint == null) {
+			final MessageDigest digest = Checksum.sha1();
+			for (String entry : entries)
+				digest.update((entry + '\n').getBytes(StandardCharsets.UTF_8));
+			fingerprint = Checksum.hex(digest.digest());
+		}
+		
+		return fingerprint;
+	}
+	
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof AccessChanges changes && fingerprint().equals(changes.fingerprint());
+	}
+	
+	@Override
+	public int hashCode() {
+		return fingerprint().hashCode();
+	}
+	
+}
@@ -0,0 +1,166 @@
+package net.feltmc.spindle.access;
+
+import com.google.common.base.Throwables;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.feltmc.spindle.mapping.Mappings;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Converts single access transformer entries into the equivalent access widener entries.
+ * <p>
+ * Mappings are only loaded once a field or method entry has to be resolved, so converting
+ * class entries, or entries that are already cached, never pays for loading them.
+ * <p>
+ * Safe to use from several threads, the mappings are only looked into once loaded.
+ */
+public final class AccessTransformerConverter {
+	
+	private static final int BATCH_SIZE = 64;
+	
+	@FunctionalInterface
+	public interface MappingsLoader {
+		Mappings load() throws IOException;
+	}
+	
+	private final MappingsLoader mappingsLoader;
+	private volatile Mappings mappings;
+	
+	public AccessTransformerConverter(MappingsLoader mappingsLoader) {
+		this.mappingsLoader = mappingsLoader;
+	}
+	
+	/**
+	 * @return the content of an AT line, stripped of its trailing comment and surrounding whitespace
+	 */
+	public static String content(String line) {
+		final int endParseIndex = line.indexOf('#');
+		if (endParseIndex == -1)
+			return line.strip();
+		else
+			return line.substring(0, endParseIndex).strip();
+	}
+	
+	/**
+	 * @return whether the entry targets a whole class, meaning it can be converted without mappings
+	 */
+	public static boolean isClassEntry(String content) {
+		return content.split("\\s+").length == 2;
+	}
+	
+	/**
+	 * Converts the entries in batches on the common fork-join pool.
+	 *
+	 * @param contents AT entries as returned by {@link #content(String)}
+	 * @return the access widener lines for each entry, in the order of {@code contents}
+	 */
+	public List<List<String>> convertAll(List<String> contents) throws IOException {
+		final List<ForkJoinTask<List<List<String>>>> batches = new ArrayList<>();
+		for (int start = 0; start < contents.size(); start += BATCH_SIZE) {
+			final List<String> batch = contents.subList(start, Math.min(start + BATCH_SIZE, contents.size()));
+			batches.add(ForkJoinPool.commonPool().submit(() -> {
+				final List<List<String>> results = new ArrayList<>(batch.size());
+				for (String content : batch)
+					results.add(convert(content));
+				
+				return results;
+			}));
+		}
+		
+		final List<List<String>> results = new ArrayList<>(contents.size());
+		for (ForkJoinTask<List<List<String>>> batch : batches) {
+			try {
+				results.addAll(batch.get());
+			} catch (ExecutionException e) {
+				Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+				Throwables.throwIfUnchecked(e.getCause());
+				throw new IOException("Failed to convert access transformer entries", e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while converting access transformer entries", e);
+			}
+		}
+		
+		return results;
+	}
+	
+	/**
+	 * @param content an AT entry as returned by {@link #content(String)}
+	 * @return the access widener lines for the entry, without any comments
+	 */
+	public List<String> convert(String content) throws IOException {
+		final List<String> result = new ArrayList<>(2);
+		final String[] tokens = content.split("\\s+");
+		
+		final int finalModIndex = tokens[0].length() - 2;
+		final String visibility;
+		final boolean unfinal;
+		if ((unfinal = tokens[0].endsWith("-f")) || tokens[0].endsWith("+f")) {
+			visibility = tokens[0].substring(0, finalModIndex);
+		} else {
+			visibility = tokens[0];
+		}
+		
+		final String className = tokens[1].replaceAll("\\.", "/");
+		
+		if (tokens.length == 2) { // target is a class; cease parsing
+			if (unfinal)
+				result.add("transitive-extendable class " + className);
+			else if (!visibility.equals("private"))
+				result.add("transitive-accessible class " + className);
+			
+			return result;
+		}
+		
+		final Mappings mappings = getMappings();
+		final MappingTreeView.ClassMappingView classMapping = mappings.findClass(className, Mappings.Namespace.MERGED);
+		
+		final int methodDescIndex = tokens[2].indexOf('(');
+		if (methodDescIndex == -1) { // field
+			final MappingTreeView.FieldMappingView fieldMapping = mappings.findField(classMapping, tokens[2], Mappings.Namespace.SRG);
+			
+			final String mappedName = fieldMapping.getName(Mappings.Namespace.MERGED.name);
+			final String mappedDesc = fieldMapping.getDesc(Mappings.Namespace.MERGED.name);
+			
+			final String suffix = " field %s %s %s".formatted(className, mappedName, mappedDesc);
+			
+			if (unfinal)
+				result.add("transitive-mutable" + suffix);
+			if (!visibility.equals("private"))
+				result.add("transitive-accessible" + suffix);
+		} else { // method
+			final String methodName = tokens[2].substring(0, methodDescIndex);
+			final String mappedDesc = tokens[2].substring(methodDescIndex);
+			final String methodDesc = mappings.mapSignature(mappedDesc, Mappings.Namespace.MERGED, Mappings.Namespace.SRG);
+			final MappingTreeView.MethodMappingView methodMapping = mappings.findMethod(classMapping, methodName, methodDesc, Mappings.Namespace.SRG);
+			
+			final String mappedName = methodMapping.getName(Mappings.Namespace.MERGED.name);
+			
+			final String suffix = " method %s %s %s".formatted(className, mappedName, mappedDesc);
+			
+			if (unfinal)
+				result.add("transitive-extendable" + suffix);
+			if (visibility.equals("public") || (!unfinal && !visibility.equals("private")))
+				result.add("transitive-accessible" + suffix);
+		}
+		
+		return result;
+	}
+	
+	private Mappings getMappings() throws IOException {
+		if (mappings == null) {
+			synchronized (this) {
+				if (mappings == null)
+					mappings = mappingsLoader.load();
+			}
+		}
+		
+		return mappings;
+	}
+	
+}
@@ -0,0 +1,182 @@
+package net.feltmc.spindle.access;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Collects access widener entries and writes the smallest equivalent set of them.
+ * <p>
+ * Entries are grouped by their target, so duplicates collapse into one line per access, an
+ * extendable class implies it's accessible, and a transitive entry implies the plain one.
+ * Targets are written sorted by owner, kind, name and descriptor, each preceded by the comments
+ * of the AT entries that contributed to it. Comments that belong to no target are kept in the order
+ * they were added, in a header group written before the targets or a trailer group written after them.
+ */
+public final class AccessWidenerModel {
+	
+	/**
+	 * Lines opening and closing the block of the access widener that spindle manages.
+	 */
+	public static final String SPINDLE_BLOCK_START = "^\\s*#\\s*spindle\\s*\\{\\s*$";
+	public static final String SPINDLE_BLOCK_END = "^\\s*#\\s*}";
+	
+	public enum Kind {
+		CLASS("class"),
+		FIELD("field"),
+		METHOD("method"),
+		;
+		
+		public final String name;
+		
+		Kind(String name) {
+			this.name = name;
+		}
+	}
+	
+	public enum Access {
+		ACCESSIBLE("accessible"),
+		EXTENDABLE("extendable"),
+		MUTABLE("mutable"),
+		;
+		
+		public final String name;
+		
+		Access(String name) {
+			this.name = name;
+		}
+	}
+	
+	private record Target(String owner, Kind kind, String name, String desc) implements Comparable<Target> {
+		
+		private static final Comparator<Target> ORDER = Comparator.comparing(Target::owner)
+			.thenComparing(Target::kind)
+			.thenComparing(Target::name)
+			.thenComparing(Target::desc);
+		
+		@Override
+		public int compareTo(Target other) {
+			return ORDER.compare(this, other);
+		}
+		
+	}
+	
+	private static final class Accesses {
+		
+		// value is whether the access is transitive
+		final EnumMap<Access, Boolean> accesses = new EnumMap<>(Access.class);
+		final Set<String> comments = new LinkedHashSet<>();
+		
+	}
+	
+	private final Map<Target, Accesses> targets = new TreeMap<>();
+	private final List<String> header = new ArrayList<>();
+	private final List<String> trailer = new ArrayList<>();
+	
+	/**
+	 * Adds access widener lines along with the comments to keep next to them. If there are no lines,
+	 * the comments go to the trailer instead.
+	 *
+	 * @param lines entries in the {@code [transitive-]<access> <kind> <owner> [<name> <desc>]} format
+	 */
+	public void add(Collection<String> lines, Collection<String> comments) {
+		if (lines.isEmpty())
+			trailer.addAll(comments);
+		
+		for (String line : lines) {
+			final String[] tokens = line.strip().split("\\s+");
+			if (tokens.length < 3)
+				throw new IllegalArgumentException("Malformed access widener entry: " + line);
+			
+			final boolean transitive = tokens[0].startsWith("transitive-");
+			final Access access = access(transitive ? tokens[0].substring("transitive-".length()) : tokens[0]);
+			final Kind kind = kind(tokens[1]);
+			if (kind != Kind.CLASS && tokens.length < 5)
+				throw new IllegalArgumentException("Malformed access widener entry: " + line);
+			
+			final Target target = kind == Kind.CLASS
+				? new Target(tokens[2], kind, "", "")
+				: new Target(tokens[2], kind, tokens[3], tokens[4]);
+			
+			final Accesses accesses = targets.computeIfAbsent(target, x -> new Accesses());
+			accesses.accesses.merge(access, transitive, Boolean::logicalOr);
+			accesses.comments.addAll(comments);
+		}
+	}
+	
+	/**
+	 * Adds comments that belong to no entry, such as the header or section comments of an AT.
+	 */
+	public void addHeader(Collection<String> comments) {
+		header.addAll(comments);
+	}
+	
+	/**
+	 * Adds comments that belong to no entry and follow all of them, such as the end of an AT.
+	 */
+	public void addTrailer(Collection<String> comments) {
+		trailer.addAll(comments);
+	}
+	
+	public void write(BufferedWriter writer) throws IOException {
+		writeComments(writer, header);
+		
+		for (Map.Entry<Target, Accesses> entry : targets.entrySet()) {
+			final Target target = entry.getKey();
+			// copied, so writing leaves the model as it was
+			final EnumMap<Access, Boolean> accesses = new EnumMap<>(entry.getValue().accesses);
+			
+			// an extendable class is made public as well
+			if (target.kind() == Kind.CLASS && accesses.containsKey(Access.EXTENDABLE) && accesses.containsKey(Access.ACCESSIBLE)
+				&& (accesses.get(Access.EXTENDABLE) || !accesses.get(Access.ACCESSIBLE)))
+				accesses.remove(Access.ACCESSIBLE);
+			
+			writeComments(writer, entry.getValue().comments);
+			
+			for (Map.Entry<Access, Boolean> access : accesses.entrySet()) {
+				if (access.getValue())
+					writer.write("transitive-");
+				writer.write(access.getKey().name);
+				writer.write(' ');
+				writer.write(target.kind().name);
+				writer.write(' ');
+				writer.write(target.owner());
+				if (target.kind() != Kind.CLASS) {
+					writer.write(' ');
+					writer.write(target.name());
+					writer.write(' ');
+					writer.write(target.desc());
+				}
+				writer.newLine();
+			}
+		}
+		
+		writeComments(writer, trailer);
+	}
+	
+	private static void writeComments(BufferedWriter writer, Collection<String> comments) throws IOException {
+		for (String comment : comments) {
+			writer.write(comment);
+			writer.newLine();
+		}
+	}
+	
+	static Access access(String name) {
+		for (Access access : Access.values()) {
+			if (access.name.equals(name))
+				return access;
+		}
+		
+		throw new IllegalArgumentException("Unknown access widener access: " + name);
+	}
+	
+	static Kind kind(String name) {
+		for (Kind kind : Kind.values()) {
+			if (kind.name.equals(name))
+				return kind;
+		}
+		
+		throw new IllegalArgumentException("Unknown access widener target kind: " + name);
+	}
+	
+}
@@ -0,0 +1,106 @@
+package net.feltmc.spindle.access;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persisted results of converting AT entries, keyed by the entry's content.
+ * <p>
+ * The whole cache is tied to a key covering the mapping inputs and Minecraft version, and is
+ * discarded as soon as that key changes. Entries that weren't looked up during a run are
+ * dropped when saving, so the cache never outgrows the AT it was built from.
+ */
+public final class ResolutionCache {
+	
+	private static final int MAGIC = 0x53504143;
+	private static final int VERSION = 1;
+	
+	private final Path file;
+	private final String key;
+	private final Map<String, List<String>> loaded;
+	private final Map<String, List<String>> used = new LinkedHashMap<>();
+	private boolean modified;
+	
+	private ResolutionCache(Path file, String key, Map<String, List<String>> loaded) {
+		this.file = file;
+		this.key = key;
+		this.loaded = loaded;
+	}
+	
+	public static ResolutionCache load(Path file, String key) throws IOException {
+		final Map<String, List<String>> entries = new HashMap<>();
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() == MAGIC && in.readInt() == VERSION && in.readUTF().equals(key)) {
+				final int count = in.readInt();
+				for (int i = 0; i < count; i++) {
+					final String entry = in.readUTF();
+					final int lines = in.readInt();
+					final List<String> result = new ArrayList<>(lines);
+					for (int j = 0; j < lines; j++)
+						result.add(in.readUTF());
+					
+					entries.put(entry, List.copyOf(result));
+				}
+			}
+		} catch (NoSuchFileException | EOFException | UTFDataFormatException e) {
+			// missing or unreadable, start over
+			entries.clear();
+		}
+		
+		return new ResolutionCache(file, key, entries);
+	}
+	
+	public @Nullable List<String> get(String entry) {
+		final List<String> result = loaded.get(entry);
+		if (result != null)
+			used.put(entry, result);
+		
+		return result;
+	}
+	
+	public void put(String entry, List<String> result) {
+		used.put(entry, List.copyOf(result));
+		modified = true;
+	}
+	
+	/**
+	 * Writes the entries used since loading, unless they are exactly the ones that were loaded.
+	 */
+	public void save() throws IOException {
+		if (!modified && used.size() == loaded.size())
+			return;
+		
+		Files.createDirectories(file.getParent());
+		final Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(key);
+				out.writeInt(used.size());
+				for (Map.Entry<String, List<String>> entry : used.entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeInt(entry.getValue().size());
+					for (String line : entry.getValue())
+						out.writeUTF(line);
+				}
+			}
+			
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+}
@@ -0,0 +1,111 @@
+package net.feltmc.spindle.mapping;
+
+import net.feltmc.spindle.util.Checksum;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+
+/**
+ * Content-addressed store for downloaded mapping files, laid out as
+ * {@code <root>/<mcVersion>/<name>-<sha1>.<ext>} with a {@code .sha1} sidecar per entry.
+ * Entries are verified on every lookup; a corrupt entry is re-fetched once.
+ * <p>
+ * Files without a published hash are named after the hash of their URL instead, so pointing a
+ * download somewhere else fetches it again rather than reusing what the old URL served.
+ */
+public class MappingCache {
+	
+	private static final String HASH_SUFFIX = ".sha1";
+	
+	private final Path root;
+	private final boolean offline;
+	
+	public MappingCache(Path root, boolean offline) {
+		this.root = root;
+		this.offline = offline;
+	}
+	
+	public Path getRoot() {
+		return root;
+	}
+	
+	public boolean isOffline() {
+		return offline;
+	}
+	
+	/**
+	 * @param sha1 the expected hash of the file, or {@code null} if the upstream doesn't publish one
+	 *             (in which case the hash recorded at download time is used for verification)
+	 */
+	public Path resolve(String mcVersion, String name, String url, @Nullable String sha1) throws IOException {
+		final Path file = root.resolve(mcVersion).resolve(withHash(name, sha1 != null ? sha1 : urlHash(url)));
+		final Path hashFile = file.resolveSibling(file.getFileName() + HASH_SUFFIX);
+		
+		if (isValid(file, hashFile, sha1))
+			return file;
+		
+		if (offline)
+			throw new IOException("%s for Minecraft %s is not cached at %s and Gradle is running offline".formatted(name, mcVersion, file));
+		
+		download(url, file, hashFile, sha1);
+		
+		return file;
+	}
+	
+	private static String withHash(String name, String sha1) {
+		final int extension = name.lastIndexOf('.');
+		return extension == -1 ? name + "-" + sha1 : name.substring(0, extension) + "-" + sha1 + name.substring(extension);
+	}
+	
+	private static String urlHash(String url) {
+		return Checksum.hex(Checksum.sha1().digest(url.getBytes(StandardCharsets.UTF_8)));
+	}
+	
+	private static boolean isValid(Path file, Path hashFile, @Nullable String sha1) throws IOException {
+		if (!Files.isRegularFile(file))
+			return false;
+		
+		final String expected;
+		if (sha1 != null)
+			expected = sha1;
+		else if (Files.isRegularFile(hashFile))
+			expected = Files.readString(hashFile, StandardCharsets.UTF_8).strip();
+		else
+			return false;
+		
+		return expected.equalsIgnoreCase(Checksum.sha1(file));
+	}
+	
+	private static void download(String url, Path file, Path hashFile, @Nullable String sha1) throws IOException {
+		Files.createDirectories(file.getParent());
+		
+		final Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			final MessageDigest digest = Checksum.sha1();
+			
+			try (InputStream in = new DigestInputStream(new URL(url).openStream(), digest);
+				 OutputStream out = Files.newOutputStream(tempFile)) {
+				in.transferTo(out);
+			}
+			
+			final String actual = Checksum.hex(digest.digest());
+			if (sha1 != null && !sha1.equalsIgnoreCase(actual))
+				throw new IOException("Checksum mismatch for %s: expected %s but got %s".formatted(url, sha1, actual));
+			
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Files.writeString(hashFile, actual, StandardCharsets.UTF_8);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+}
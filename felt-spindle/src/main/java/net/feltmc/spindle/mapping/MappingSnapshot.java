@@ -0,0 +1,631 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.MappingVisitor;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.fabricmc.mappingio.tree.VisitOrder;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Read-only, memory-mapped copy of a merged mapping tree.
+ * <p>
+ * Classes, fields and methods are fixed-size int records pointing into a shared string pool,
+ * so opening a snapshot costs a single {@code mmap} and lookups only decode the names they touch.
+ * Classes are indexed by name in every namespace through open-addressing tables stored in the file,
+ * so lookups need no per-namespace maps on the heap and are safe from any number of threads.
+ * Method args, local variables, comments and metadata are not retained.
+ */
+public final class MappingSnapshot implements MappingTreeView {
+	
+	private static final int MAGIC = 0x5350444C; // "SPDL"
+	public static final int VERSION = 2;
+	
+	private static final int NULL = -1;
+	
+	// header layout, in ints
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 1;
+	private static final int HEADER_CLASS_COUNT = 2;
+	private static final int HEADER_FIELD_COUNT = 3;
+	private static final int HEADER_METHOD_COUNT = 4;
+	private static final int HEADER_POOL = 5;
+	private static final int HEADER_CLASSES = 6;
+	private static final int HEADER_FIELDS = 7;
+	private static final int HEADER_METHODS = 8;
+	private static final int HEADER_INDEX = 9;
+	private static final int HEADER_SRC_NAMESPACE = 10;
+	private static final int HEADER_DST_NAMESPACE_COUNT = 11;
+	private static final int HEADER_SIZE = 12;
+	
+	// class record: srcName, dstNames..., fieldStart, fieldCount, methodStart, methodCount
+	private static final int CLASS_FIXED_INTS = 5;
+	// member record: owner, srcName, srcDesc, dstNames...
+	private static final int MEMBER_FIXED_INTS = 3;
+	// class index slot: name hash, classId + 1 (0 marks an empty slot)
+	private static final int INDEX_SLOT_INTS = 2;
+	
+	private final ByteBuffer buffer;
+	private final String srcNamespace;
+	private final List<String> dstNamespaces;
+	private final int classCount;
+	private final int poolOffset;
+	private final int classesOffset;
+	private final int fieldsOffset;
+	private final int methodsOffset;
+	private final int[] indexOffsets;
+	private final int classSize;
+	private final int memberSize;
+	
+	private MappingSnapshot(ByteBuffer buffer) {
+		this.buffer = buffer;
+		
+		classCount = header(HEADER_CLASS_COUNT);
+		poolOffset = header(HEADER_POOL);
+		classesOffset = header(HEADER_CLASSES);
+		fieldsOffset = header(HEADER_FIELDS);
+		methodsOffset = header(HEADER_METHODS);
+		srcNamespace = string(header(HEADER_SRC_NAMESPACE));
+		
+		final int dstCount = header(HEADER_DST_NAMESPACE_COUNT);
+		final List<String> dstNamespaces = new ArrayList<>(dstCount);
+		for (int i = 0; i < dstCount; i++)
+			dstNamespaces.add(string(buffer.getInt((HEADER_SIZE + i) * Integer.BYTES)));
+		this.dstNamespaces = Collections.unmodifiableList(dstNamespaces);
+		
+		classSize = (CLASS_FIXED_INTS + dstCount) * Integer.BYTES;
+		memberSize = (MEMBER_FIXED_INTS + dstCount) * Integer.BYTES;
+		
+		// one hash table per namespace, src first: capacity, then (hash, classId + 1) slots
+		indexOffsets = new int[dstCount + 1];
+		int offset = header(HEADER_INDEX);
+		for (int i = 0; i < indexOffsets.length; i++) {
+			indexOffsets[i] = offset;
+			offset += (1 + buffer.getInt(offset) * INDEX_SLOT_INTS) * Integer.BYTES;
+		}
+	}
+	
+	/**
+	 * @return the snapshot stored in {@code file}, or {@code null} if it doesn't exist or was written by another format version
+	 */
+	public static @Nullable MappingSnapshot open(Path file) throws IOException {
+		if (!Files.isRegularFile(file))
+			return null;
+		
+		final ByteBuffer buffer;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_SIZE * Integer.BYTES)
+				return null;
+			
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		
+		if (buffer.getInt(HEADER_MAGIC * Integer.BYTES) != MAGIC || buffer.getInt(HEADER_VERSION * Integer.BYTES) != VERSION)
+			return null;
+		
+		return new MappingSnapshot(buffer);
+	}
+	
+	public static void write(MappingTreeView tree, Path file) throws IOException {
+		write(tree, tree.getDstNamespaces(), file);
+	}
+	
+	/**
+	 * Writes a snapshot that only keeps the given dst namespaces of {@code tree}.
+	 */
+	public static void write(MappingTreeView tree, List<String> dstNamespaces, Path file) throws IOException {
+		final int dstCount = dstNamespaces.size();
+		final int[] treeNamespaceIds = new int[dstCount];
+		for (int ns = 0; ns < dstCount; ns++) {
+			treeNamespaceIds[ns] = tree.getNamespaceId(dstNamespaces.get(ns));
+			if (treeNamespaceIds[ns] < 0)
+				throw new IllegalArgumentException("Tree has no namespace " + dstNamespaces.get(ns));
+		}
+		final List<? extends ClassMappingView> classes = List.copyOf(tree.getClasses());
+		
+		final StringPool pool = new StringPool();
+		final ByteArrayOutputStream classesBytes = new ByteArrayOutputStream();
+		final ByteArrayOutputStream fieldsBytes = new ByteArrayOutputStream();
+		final ByteArrayOutputStream methodsBytes = new ByteArrayOutputStream();
+		final DataOutputStream classesOut = new DataOutputStream(classesBytes);
+		final DataOutputStream fieldsOut = new DataOutputStream(fieldsBytes);
+		final DataOutputStream methodsOut = new DataOutputStream(methodsBytes);
+		
+		int fieldCount = 0;
+		int methodCount = 0;
+		
+		for (int classId = 0; classId < classes.size(); classId++) {
+			final ClassMappingView classMapping = classes.get(classId);
+			final Collection<? extends FieldMappingView> fields = classMapping.getFields();
+			final Collection<? extends MethodMappingView> methods = classMapping.getMethods();
+			
+			classesOut.writeInt(pool.intern(classMapping.getSrcName()));
+			for (int ns = 0; ns < dstCount; ns++)
+				classesOut.writeInt(pool.intern(classMapping.getDstName(treeNamespaceIds[ns])));
+			classesOut.writeInt(fieldCount);
+			classesOut.writeInt(fields.size());
+			classesOut.writeInt(methodCount);
+			classesOut.writeInt(methods.size());
+			
+			for (FieldMappingView field : fields)
+				writeMember(fieldsOut, pool, classId, field, treeNamespaceIds);
+			for (MethodMappingView method : methods)
+				writeMember(methodsOut, pool, classId, method, treeNamespaceIds);
+			
+			fieldCount += fields.size();
+			methodCount += methods.size();
+		}
+		
+		// all namespace tables are filled in a single pass over the classes
+		final int capacity = Integer.highestOneBit(Math.max(1, classes.size() * 2 - 1)) << 1;
+		final int[][] tables = new int[dstCount + 1][capacity * INDEX_SLOT_INTS];
+		for (int classId = 0; classId < classes.size(); classId++) {
+			final ClassMappingView classMapping = classes.get(classId);
+			
+			for (int ns = SRC_NAMESPACE_ID; ns < dstCount; ns++) {
+				final String name = ns == SRC_NAMESPACE_ID ? classMapping.getSrcName() : classMapping.getDstName(treeNamespaceIds[ns]);
+				if (name == null)
+					continue;
+				
+				final int[] table = tables[ns + 1];
+				final int hash = name.hashCode();
+				int slot = spread(hash) & (capacity - 1);
+				while (table[slot * INDEX_SLOT_INTS + 1] != 0)
+					slot = (slot + 1) & (capacity - 1);
+				
+				table[slot * INDEX_SLOT_INTS] = hash;
+				table[slot * INDEX_SLOT_INTS + 1] = classId + 1;
+			}
+		}
+		
+		final ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+		final DataOutputStream indexOut = new DataOutputStream(indexBytes);
+		for (int[] table : tables) {
+			indexOut.writeInt(capacity);
+			for (int value : table)
+				indexOut.writeInt(value);
+		}
+		
+		final int srcNamespace = pool.intern(tree.getSrcNamespace());
+		final int[] dstNamespaceIds = dstNamespaces.stream().mapToInt(pool::intern).toArray();
+		
+		final int headerBytes = (HEADER_SIZE + dstCount) * Integer.BYTES;
+		final int poolStart = headerBytes;
+		final int classesStart = poolStart + pool.size();
+		final int fieldsStart = classesStart + classesBytes.size();
+		final int methodsStart = fieldsStart + fieldsBytes.size();
+		final int indexStart = methodsStart + methodsBytes.size();
+		
+		Files.createDirectories(file.getParent());
+		final Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(classes.size());
+				out.writeInt(fieldCount);
+				out.writeInt(methodCount);
+				out.writeInt(poolStart);
+				out.writeInt(classesStart);
+				out.writeInt(fieldsStart);
+				out.writeInt(methodsStart);
+				out.writeInt(indexStart);
+				out.writeInt(srcNamespace);
+				out.writeInt(dstCount);
+				for (int id : dstNamespaceIds)
+					out.writeInt(id);
+				
+				pool.writeTo(out);
+				classesBytes.writeTo(out);
+				fieldsBytes.writeTo(out);
+				methodsBytes.writeTo(out);
+				indexBytes.writeTo(out);
+			}
+			
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+	
+	private static void writeMember(DataOutputStream out, StringPool pool, int owner, MemberMappingView member, int[] treeNamespaceIds) throws IOException {
+		out.writeInt(owner);
+		out.writeInt(pool.intern(member.getSrcName()));
+		out.writeInt(pool.intern(member.getSrcDesc()));
+		for (int treeNamespaceId : treeNamespaceIds)
+			out.writeInt(pool.intern(member.getDstName(treeNamespaceId)));
+	}
+	
+	private static final class StringPool {
+		private final Map<String, Integer> offsets = new HashMap<>();
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		
+		int intern(@Nullable String value) {
+			if (value == null)
+				return NULL;
+			
+			return offsets.computeIfAbsent(value, s -> {
+				final int offset = bytes.size();
+				final byte[] encoded = s.getBytes(StandardCharsets.UTF_8);
+				try {
+					out.writeInt(encoded.length);
+					out.write(encoded);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return offset;
+			});
+		}
+		
+		int size() {
+			return bytes.size();
+		}
+		
+		void writeTo(OutputStream out) throws IOException {
+			bytes.writeTo(out);
+		}
+	}
+	
+	private int header(int index) {
+		return buffer.getInt(index * Integer.BYTES);
+	}
+	
+	private @Nullable String string(int offset) {
+		if (offset == NULL)
+			return null;
+		
+		final int position = poolOffset + offset;
+		final byte[] bytes = new byte[buffer.getInt(position)];
+		buffer.get(position + Integer.BYTES, bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+	
+	private int classInt(int classId, int field) {
+		return buffer.getInt(classesOffset + classId * classSize + field * Integer.BYTES);
+	}
+	
+	private int memberInt(int tableOffset, int memberId, int field) {
+		return buffer.getInt(tableOffset + memberId * memberSize + field * Integer.BYTES);
+	}
+	
+	private int classNameOffset(int classId, int namespace) {
+		return classInt(classId, namespace + 1);
+	}
+	
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+	
+	/**
+	 * Compares a pooled string against {@code value} without decoding it, as long as both are ASCII.
+	 */
+	private boolean stringEquals(int offset, String value) {
+		final int position = poolOffset + offset;
+		final int length = buffer.getInt(position);
+		if (length != value.length())
+			return length >= value.length() && value.equals(string(offset)); // multi-byte UTF-8
+		
+		for (int i = 0; i < length; i++) {
+			final byte b = buffer.get(position + Integer.BYTES + i);
+			if (b < 0)
+				return value.equals(string(offset));
+			if (b != value.charAt(i))
+				return false;
+		}
+		
+		return true;
+	}
+	
+	private int findClassId(String name, int namespace) {
+		if (namespace < SRC_NAMESPACE_ID || namespace >= dstNamespaces.size())
+			return NULL;
+		
+		final int tableOffset = indexOffsets[namespace + 1] + Integer.BYTES;
+		final int mask = buffer.getInt(indexOffsets[namespace + 1]) - 1;
+		final int hash = name.hashCode();
+		
+		for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+			final int slotOffset = tableOffset + slot * INDEX_SLOT_INTS * Integer.BYTES;
+			final int classId = buffer.getInt(slotOffset + Integer.BYTES) - 1;
+			
+			if (classId == NULL)
+				return NULL;
+			if (buffer.getInt(slotOffset) == hash && stringEquals(classNameOffset(classId, namespace), name))
+				return classId;
+		}
+	}
+	
+	private @Nullable ClassView findClass(String name, int namespace) {
+		final int classId = findClassId(name, namespace);
+		return classId == NULL ? null : new ClassView(classId);
+	}
+	
+	@Override
+	public String getSrcNamespace() {
+		return srcNamespace;
+	}
+	
+	@Override
+	public List<String> getDstNamespaces() {
+		return dstNamespaces;
+	}
+	
+	@Override
+	public Collection<Map.Entry<String, String>> getMetadata() {
+		return Collections.emptyList();
+	}
+	
+	@Override
+	public String getMetadata(String key) {
+		return null;
+	}
+	
+	@Override
+	public Collection<? extends ClassMappingView> getClasses() {
+		return new AbstractList<ClassView>() {
+			@Override
+			public ClassView get(int index) {
+				Objects.checkIndex(index, classCount);
+				return new ClassView(index);
+			}
+			
+			@Override
+			public int size() {
+				return classCount;
+			}
+		};
+	}
+	
+	@Override
+	public ClassMappingView getClass(String srcName) {
+		return findClass(srcName, SRC_NAMESPACE_ID);
+	}
+	
+	@Override
+	public ClassMappingView getClass(String name, int namespace) {
+		return findClass(name, namespace);
+	}
+	
+	/**
+	 * Visits the snapshot in storage order; {@code order} is ignored.
+	 */
+	@Override
+	public void accept(MappingVisitor visitor, VisitOrder order) throws IOException {
+		do {
+			if (visitor.visitHeader())
+				visitor.visitNamespaces(srcNamespace, dstNamespaces);
+			
+			if (visitor.visitContent()) {
+				for (ClassMappingView classMapping : getClasses()) {
+					if (!visitor.visitClass(classMapping.getSrcName()))
+						continue;
+					
+					visitDstNames(visitor, MappedElementKind.CLASS, classMapping);
+					if (!visitor.visitElementContent(MappedElementKind.CLASS))
+						continue;
+					
+					for (FieldMappingView field : classMapping.getFields()) {
+						if (visitor.visitField(field.getSrcName(), field.getSrcDesc())) {
+							visitDstNames(visitor, MappedElementKind.FIELD, field);
+							visitor.visitElementContent(MappedElementKind.FIELD);
+						}
+					}
+					
+					for (MethodMappingView method : classMapping.getMethods()) {
+						if (visitor.visitMethod(method.getSrcName(), method.getSrcDesc())) {
+							visitDstNames(visitor, MappedElementKind.METHOD, method);
+							visitor.visitElementContent(MappedElementKind.METHOD);
+						}
+					}
+				}
+			}
+		} while (!visitor.visitEnd());
+	}
+	
+	private void visitDstNames(MappingVisitor visitor, MappedElementKind kind, ElementMappingView element) throws IOException {
+		for (int ns = 0; ns < dstNamespaces.size(); ns++) {
+			final String name = element.getDstName(ns);
+			if (name != null)
+				visitor.visitDstName(kind, ns, name);
+		}
+	}
+	
+	private final class ClassView implements ClassMappingView {
+		private final int id;
+		
+		ClassView(int id) {
+			this.id = id;
+		}
+		
+		@Override
+		public MappingTreeView getTree() {
+			return MappingSnapshot.this;
+		}
+		
+		@Override
+		public String getSrcName() {
+			return string(classInt(id, 0));
+		}
+		
+		@Override
+		public String getDstName(int namespace) {
+			return string(classNameOffset(id, namespace));
+		}
+		
+		@Override
+		public String getComment() {
+			return null;
+		}
+		
+		@Override
+		public Collection<? extends FieldMappingView> getFields() {
+			final int start = classInt(id, dstNamespaces.size() + 1);
+			final int count = classInt(id, dstNamespaces.size() + 2);
+			
+			return new AbstractList<FieldView>() {
+				@Override
+				public FieldView get(int index) {
+					Objects.checkIndex(index, count);
+					return new FieldView(start + index);
+				}
+				
+				@Override
+				public int size() {
+					return count;
+				}
+			};
+		}
+		
+		@Override
+		public FieldMappingView getField(String srcName, String srcDesc) {
+			for (FieldMappingView field : getFields()) {
+				if (field.getSrcName().equals(srcName) && (srcDesc == null || srcDesc.equals(field.getSrcDesc())))
+					return field;
+			}
+			
+			return null;
+		}
+		
+		@Override
+		public Collection<? extends MethodMappingView> getMethods() {
+			final int start = classInt(id, dstNamespaces.size() + 3);
+			final int count = classInt(id, dstNamespaces.size() + 4);
+			
+			return new AbstractList<MethodView>() {
+				@Override
+				public MethodView get(int index) {
+					Objects.checkIndex(index, count);
+					return new MethodView(start + index);
+				}
+				
+				@Override
+				public int size() {
+					return count;
+				}
+			};
+		}
+		
+		@Override
+		public MethodMappingView getMethod(String srcName, String srcDesc) {
+			for (MethodMappingView method : getMethods()) {
+				if (method.getSrcName().equals(srcName) && (srcDesc == null || srcDesc.equals(method.getSrcDesc())))
+					return method;
+			}
+			
+			return null;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof ClassView other && other.id == id && other.getTree() == getTree();
+		}
+		
+		@Override
+		public int hashCode() {
+			return id;
+		}
+	}
+	
+	private abstract class MemberView implements MemberMappingView {
+		protected final int id;
+		
+		MemberView(int id) {
+			this.id = id;
+		}
+		
+		protected abstract int tableOffset();
+		
+		@Override
+		public MappingTreeView getTree() {
+			return MappingSnapshot.this;
+		}
+		
+		@Override
+		public ClassMappingView getOwner() {
+			return new ClassView(memberInt(tableOffset(), id, 0));
+		}
+		
+		@Override
+		public String getSrcName() {
+			return string(memberInt(tableOffset(), id, 1));
+		}
+		
+		@Override
+		public String getSrcDesc() {
+			return string(memberInt(tableOffset(), id, 2));
+		}
+		
+		@Override
+		public String getDstName(int namespace) {
+			return string(memberInt(tableOffset(), id, MEMBER_FIXED_INTS + namespace));
+		}
+		
+		@Override
+		public String getComment() {
+			return null;
+		}
+		
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof MemberView other && other.getClass() == getClass() && other.id == id && other.getTree() == getTree();
+		}
+		
+		@Override
+		public int hashCode() {
+			return id;
+		}
+	}
+	
+	private final class FieldView extends MemberView implements FieldMappingView {
+		FieldView(int id) {
+			super(id);
+		}
+		
+		@Override
+		protected int tableOffset() {
+			return fieldsOffset;
+		}
+	}
+	
+	private final class MethodView extends MemberView implements MethodMappingView {
+		MethodView(int id) {
+			super(id);
+		}
+		
+		@Override
+		protected int tableOffset() {
+			return methodsOffset;
+		}
+		
+		@Override
+		public Collection<? extends MethodArgMappingView> getArgs() {
+			return Collections.emptyList();
+		}
+		
+		@Override
+		public MethodArgMappingView getArg(int argPosition, int lvIndex, String srcName) {
+			return null;
+		}
+		
+		@Override
+		public Collection<? extends MethodVarMappingView> getVars() {
+			return Collections.emptyList();
+		}
+		
+		@Override
+		public MethodVarMappingView getVar(int lvtRowIndex, int lvIndex, int startOpIdx, String srcName) {
+			return null;
+		}
+	}
+	
+}
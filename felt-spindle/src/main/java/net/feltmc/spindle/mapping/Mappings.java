@@ -1,27 +1,37 @@
 package net.feltmc.spindle.mapping;
 
-import net.fabricmc.loom.configuration.providers.minecraft.MinecraftVersionMeta;
+import com.google.common.base.Throwables;
 import net.fabricmc.mappingio.MappingVisitor;
 import net.fabricmc.mappingio.adapter.MappingSourceNsSwitch;
 import net.fabricmc.mappingio.format.ProGuardReader;
 import net.fabricmc.mappingio.format.Tiny2Reader;
 import net.fabricmc.mappingio.format.TsrgReader;
 import net.fabricmc.mappingio.tree.MappingTree;
-import net.fabricmc.mappingio.tree.MemoryMappingTree;
-import net.feltmc.spindle.util.LazyMap;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.feltmc.spindle.util.Checksum;
+import net.feltmc.spindle.util.DescriptorRemapper;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.*;
-import java.net.URL;
-import java.util.List;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class Mappings {
 	
 	private static final String SRG_URL_TEMPLATE = "https://raw.githubusercontent.com/MinecraftForge/MCPConfig/master/versions/release/%s/joined.tsrg";
-	private static final String MOJMAP_CLIENT_MAPPINGS = "client_mappings";
-	private static final String MOJMAP_SERVER_MAPPINGS = "server_mappings";
+	private static final String SRG_FILE_NAME = "joined.tsrg";
+	private static final String MOJMAP_CLIENT_MAPPINGS = "client_mappings.txt";
+	private static final String MOJMAP_SERVER_MAPPINGS = "server_mappings.txt";
+	private static final String SNAPSHOT_FILE_PREFIX = "merged-";
+	private static final String SNAPSHOT_FILE_SUFFIX = ".bin";
+	// one per download
+	private static final int LOADER_THREADS = 3;
 	
 	public enum Namespace {
 		OBF("obf"),
@@ -39,91 +49,230 @@ public class Mappings {
 		}
 	}
 	
-	public final MappingTree tree;
-	public final Map<Namespace, Map<String, MappingTree.ClassMapping>> map;
+	/**
+	 * A mapping file to download, along with its expected hash if the upstream publishes one.
+	 */
+	public record Download(String url, @Nullable String sha1) {
+	}
+	
+	/**
+	 * Everything the merged mappings are built from.
+	 */
+	public record Sources(File projectMappingsFile, String mcVersion, Download srg, Download mojMapClient, Download mojMapServer) {
+		
+		/**
+		 * @return a key identifying these sources, computed without downloading or loading any of them
+		 */
+		public String key() throws IOException {
+			final MessageDigest digest = Checksum.sha1();
+			digest.update(mcVersion.getBytes(StandardCharsets.UTF_8));
+			digest.update(Checksum.sha1(projectMappingsFile.toPath()).getBytes(StandardCharsets.UTF_8));
+			for (Download download : List.of(srg, mojMapClient, mojMapServer))
+				digest.update((download.sha1() != null ? download.sha1() : download.url()).getBytes(StandardCharsets.UTF_8));
+			
+			return Checksum.hex(digest.digest());
+		}
+		
+	}
 	
-	public Mappings(final File projectMappingsFile, final String mcVersion, final MinecraftVersionMeta mcVersionMeta) throws IOException {
-		final MemoryMappingTree projectMappingsTree = new MemoryMappingTree();
-		projectMappingsTree.visitHeader();
-		Tiny2Reader.read(new FileReader(projectMappingsFile), projectMappingsTree);
-		projectMappingsTree.visitEnd();
+	/**
+	 * Which parts of the mappings are loaded: the namespaces to keep, and whether method args and local
+	 * variables are read at all. Comments are never kept.
+	 * <p>
+	 * The namespaces the merged names are picked from are still read while merging, but are only kept
+	 * if asked for.
+	 */
+	public record Pruning(Set<Namespace> namespaces, boolean keepArgs, boolean keepVars) {
 		
-		final String srgURL = String.format(SRG_URL_TEMPLATE, mcVersion);
-		final MemoryMappingTree srgMappingsTree = new MemoryMappingTree();
-		srgMappingsTree.visitHeader();
-		//noinspection deprecation
-		TsrgReader.read(new InputStreamReader(new URL(srgURL).openStream()), srgMappingsTree);
-		srgMappingsTree.visitEnd();
+		public static final Pruning NONE = new Pruning(EnumSet.allOf(Namespace.class), true, true);
+		/**
+		 * Everything {@link net.feltmc.spindle.access.AccessTransformerConverter} reads.
+		 */
+		public static final Pruning ACCESS_TRANSFORMER = new Pruning(EnumSet.of(Namespace.OBF, Namespace.SRG, Namespace.MERGED), false, false);
 		
-		final String mojMapClientUrl = mcVersionMeta.download(MOJMAP_CLIENT_MAPPINGS).url();
-		final String mojMapServerUrl = mcVersionMeta.download(MOJMAP_SERVER_MAPPINGS).url();
-		final MemoryMappingTree mojMapTree = new MemoryMappingTree();
-		final MappingVisitor mojMapInverter = new MappingSourceNsSwitch(mojMapTree, Namespace.OBF.name);
-		mojMapTree.visitHeader();
-		//noinspection deprecation
-		ProGuardReader.read(new InputStreamReader(new URL(mojMapClientUrl).openStream()), Namespace.MOJMAP.name, Namespace.OBF.name, mojMapInverter);
-		//noinspection deprecation
-		ProGuardReader.read(new InputStreamReader(new URL(mojMapServerUrl).openStream()), Namespace.MOJMAP.name, Namespace.OBF.name, mojMapInverter);
-		mojMapTree.visitEnd();
+		public Pruning {
+			namespaces = Collections.unmodifiableSet(EnumSet.copyOf(namespaces));
+			if (!namespaces.contains(Namespace.OBF))
+				throw new IllegalArgumentException("The src namespace can't be pruned");
+		}
+		
+		private String key() {
+			return namespaces.stream().map(x -> x.name).collect(Collectors.joining(",")) + (keepArgs ? "+args" : "") + (keepVars ? "+vars" : "");
+		}
 		
-		tree = MergingMappingVisitor.merge(
-			Namespace.OBF.name, List.of(projectMappingsTree, srgMappingsTree, mojMapTree),
-			Namespace.MERGED.name, Stream.of(Namespace.NAMED, Namespace.MOJMAP, Namespace.INTERMEDIARY).map(x -> x.name).toList());;
-		map = new LazyMap<>(
-			namespace ->
-				tree
-					.getClasses()
-					.stream()
-					.collect(Collectors.toMap(classMapping -> classMapping.getName(namespace.name), x -> x)));
 	}
 	
-	public String mapSignature(String signature, Namespace from, Namespace to) {
-		var builder = new StringBuilder();
+	public final MappingTreeView tree;
+	private final int[] namespaceIds = new int[Namespace.values().length];
+	// per namespace, keyed by the class' src name; built the first time a class is looked into
+	private final List<Map<String, MemberIndex<MappingTreeView.FieldMappingView>>> fieldIndexes = new ArrayList<>();
+	private final List<Map<String, MemberIndex<MappingTreeView.MethodMappingView>>> methodIndexes = new ArrayList<>();
+	private final Map<Integer, DescriptorRemapper> remappers = new ConcurrentHashMap<>();
+	
+	public static Download srgDownload(String mcVersion) {
+		return new Download(String.format(SRG_URL_TEMPLATE, mcVersion), null);
+	}
+	
+	public Mappings(final Sources sources, final MappingCache cache) throws IOException {
+		this(sources, cache, Pruning.NONE);
+	}
+	
+	public Mappings(final Sources sources, final MappingCache cache, final Pruning pruning) throws IOException {
+		final String mcVersion = sources.mcVersion();
+		final File projectMappingsFile = sources.projectMappingsFile();
+		final ExecutorService executor = Executors.newFixedThreadPool(LOADER_THREADS, runnable -> {
+			final Thread thread = new Thread(runnable, "spindle-mappings-loader");
+			thread.setDaemon(true);
+			return thread;
+		});
 		
-		for (int i = 0; i < signature.length(); i++) {
-			var c = signature.charAt(i);
-			builder.append(c);
+		try {
+			// the downloads are checked, or fetched, all at once
+			final Future<Path> srgDownload = executor.submit(() -> cache.resolve(mcVersion, SRG_FILE_NAME, sources.srg().url(), sources.srg().sha1()));
+			final Future<Path> mojMapClientDownload = executor.submit(() -> cache.resolve(mcVersion, MOJMAP_CLIENT_MAPPINGS, sources.mojMapClient().url(), sources.mojMapClient().sha1()));
+			final Future<Path> mojMapServerDownload = executor.submit(() -> cache.resolve(mcVersion, MOJMAP_SERVER_MAPPINGS, sources.mojMapServer().url(), sources.mojMapServer().sha1()));
+			final Path srgFile = get(srgDownload);
+			final Path mojMapClientFile = get(mojMapClientDownload);
+			final Path mojMapServerFile = get(mojMapServerDownload);
 			
-			if (c == 'L') {
-				for (int j = ++i; j < signature.length(); j++) {
-					if (signature.charAt(j) == ';') {
-						var fromType = signature.substring(i, j);
-						var mapping = map.get(from).get(fromType);
-						if (mapping != null)
-							builder.append(mapping.getName(to.name));
-						else
-							builder.append(fromType);
-						
-						i = j - 1;
-						break;
-					}
-				}
+			final String snapshotKey = snapshotKey(mcVersion + '/' + pruning.key(), projectMappingsFile.toPath(), srgFile, mojMapClientFile, mojMapServerFile);
+			final Path snapshotFile = cache.getRoot().resolve(mcVersion).resolve(SNAPSHOT_FILE_PREFIX + snapshotKey + SNAPSHOT_FILE_SUFFIX);
+			
+			MappingSnapshot snapshot = MappingSnapshot.open(snapshotFile);
+			if (snapshot == null) {
+				final List<String> keptNamespaces = Arrays.stream(Namespace.values())
+					.filter(x -> x != Namespace.OBF && pruning.namespaces().contains(x))
+					.map(x -> x.name)
+					.toList();
+				MappingSnapshot.write(loadMerged(projectMappingsFile, srgFile, mojMapClientFile, mojMapServerFile, pruning), keptNamespaces, snapshotFile);
+				snapshot = MappingSnapshot.open(snapshotFile);
+				
+				if (snapshot == null)
+					throw new IOException("Failed to read back mapping snapshot " + snapshotFile);
 			}
+			
+			tree = snapshot;
+		} finally {
+			executor.shutdownNow();
 		}
 		
-		return builder.toString();
+		for (Namespace namespace : Namespace.values()) {
+			namespaceIds[namespace.ordinal()] = tree.getNamespaceId(namespace.name);
+			fieldIndexes.add(new ConcurrentHashMap<>());
+			methodIndexes.add(new ConcurrentHashMap<>());
+		}
+	}
+	
+	private static MappingTree loadMerged(File projectMappingsFile, Path srgFile, Path mojMapClientFile, Path mojMapServerFile, Pruning pruning) throws IOException {
+		final List<Namespace> mergePriority = List.of(Namespace.NAMED, Namespace.MOJMAP, Namespace.INTERMEDIARY);
+		final List<String> loadedNamespaces = Arrays.stream(Namespace.values())
+			.filter(x -> x != Namespace.OBF && x != Namespace.MERGED)
+			.filter(x -> pruning.namespaces().contains(x) || pruning.namespaces().contains(Namespace.MERGED) && mergePriority.contains(x))
+			.map(x -> x.name)
+			.toList();
+		
+		final Function<MappingVisitor, MappingVisitor> pruned = next -> new PruningMappingVisitor(next, Set.copyOf(loadedNamespaces), pruning.keepArgs(), pruning.keepVars(), false);
+		
+		// every source is streamed straight into the merged tree, one after another in a fixed order, so
+		// there's no intermediate tree per source and the result is deterministic
+		final MergingMappingVisitor.StreamingMerge target = MergingMappingVisitor.stream(Namespace.OBF.name, loadedNamespaces,
+			Namespace.MERGED.name, mergePriority.stream().map(x -> x.name).toList());
+		readTiny2(projectMappingsFile.toPath(), pruned.apply(target));
+		readTsrg(srgFile, pruned.apply(target));
+		readMojMap(mojMapClientFile, pruned.apply(target));
+		readMojMap(mojMapServerFile, pruned.apply(target));
+		
+		return target.finish();
+	}
+	
+	private static void readTiny2(Path file, MappingVisitor visitor) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file)) {
+			Tiny2Reader.read(reader, visitor);
+		}
+	}
+	
+	private static void readTsrg(Path file, MappingVisitor visitor) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file)) {
+			TsrgReader.read(reader, visitor);
+		}
+	}
+	
+	private static void readMojMap(Path file, MappingVisitor visitor) throws IOException {
+		try (Reader reader = Files.newBufferedReader(file)) {
+			ProGuardReader.read(reader, Namespace.MOJMAP.name, Namespace.OBF.name, new MappingSourceNsSwitch(visitor, Namespace.OBF.name));
+		}
+	}
+	
+	private static <T> T get(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			Throwables.throwIfInstanceOf(e.getCause(), IOException.class);
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IOException("Failed to load mappings", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while loading mappings");
+		}
+	}
+	
+	private static String snapshotKey(String mcVersion, Path... inputs) throws IOException {
+		final MessageDigest digest = Checksum.sha1();
+		digest.update(Integer.toString(MappingSnapshot.VERSION).getBytes(StandardCharsets.UTF_8));
+		digest.update(mcVersion.getBytes(StandardCharsets.UTF_8));
+		for (Path input : inputs)
+			digest.update(Checksum.sha1(input).getBytes(StandardCharsets.UTF_8));
+		
+		return Checksum.hex(digest.digest());
+	}
+	
+	public String mapSignature(String signature, Namespace from, Namespace to) {
+		return getRemapper(from, to).map(signature);
+	}
+	
+	public DescriptorRemapper getRemapper(Namespace from, Namespace to) {
+		return remappers.computeIfAbsent(from.ordinal() * Namespace.values().length + to.ordinal(), x -> new DescriptorRemapper(className -> {
+			final MappingTreeView.ClassMappingView mapping = findClass(className, from);
+			return mapping != null ? mapping.getName(getNamespaceId(to)) : null;
+		}));
+	}
+	
+	public int getNamespaceId(Namespace namespace) {
+		final int id = namespaceIds[namespace.ordinal()];
+		if (id == MappingTreeView.NULL_NAMESPACE_ID)
+			throw new IllegalArgumentException("Namespace " + namespace.name + " was pruned from these mappings");
+		
+		return id;
+	}
+	
+	public MappingTreeView.ClassMappingView findClass(String className, Namespace namespace) {
+		return tree.getClass(className, getNamespaceId(namespace));
+	}
+	
+	public MappingTreeView.FieldMappingView findField(MappingTreeView.ClassMappingView classMapping, String fieldName, String fieldDesc, Namespace namespace) {
+		return fieldIndex(classMapping, namespace).get(fieldName, fieldDesc);
+	}
+	
+	public MappingTreeView.FieldMappingView findField(MappingTreeView.ClassMappingView classMapping, String fieldName, Namespace namespace) {
+		return fieldIndex(classMapping, namespace).get(fieldName);
 	}
 	
-	public MappingTree.ClassMapping findClass(String className, Namespace namespace) {
-		return map.get(namespace).getOrDefault(className, null);
+	public MappingTreeView.MethodMappingView findMethod(MappingTreeView.ClassMappingView classMapping, String methodName, String methodDesc, Namespace namespace) {
+		return methodIndex(classMapping, namespace).get(methodName, methodDesc);
 	}
 	
-	public MappingTree.FieldMapping findField(MappingTree.ClassMapping classMapping, String fieldName, String fieldDesc, Namespace namespace) {
-		return classMapping.getField(fieldName, fieldDesc, tree.getNamespaceId(namespace.name));
+	public MappingTreeView.MethodMappingView findMethod(MappingTreeView.ClassMappingView classMapping, String methodName, Namespace namespace) {
+		return methodIndex(classMapping, namespace).get(methodName);
 	}
 	
-	public MappingTree.FieldMapping findField(MappingTree.ClassMapping classMapping, String fieldName, Namespace namespace) {
-		return classMapping
-			.getFields()
-			.stream()
-			.filter(x ->
-				x.getName(namespace.name).equals(fieldName))
-			.findFirst()
-			.orElse(null);
+	private MemberIndex<MappingTreeView.FieldMappingView> fieldIndex(MappingTreeView.ClassMappingView classMapping, Namespace namespace) {
+		return fieldIndexes.get(namespace.ordinal()).computeIfAbsent(classMapping.getSrcName(), 
+			x -> MemberIndex.build(classMapping.getFields(), getNamespaceId(namespace)));
 	}
 	
-	public MappingTree.MethodMapping findMethod(MappingTree.ClassMapping classMapping, String methodName, String methodDesc, Namespace namespace) {
-		return classMapping.getMethod(methodName, methodDesc, tree.getNamespaceId(namespace.name));
+	private MemberIndex<MappingTreeView.MethodMappingView> methodIndex(MappingTreeView.ClassMappingView classMapping, Namespace namespace) {
+		return methodIndexes.get(namespace.ordinal()).computeIfAbsent(classMapping.getSrcName(), 
+			x -> MemberIndex.build(classMapping.getMethods(), getNamespaceId(namespace)));
 	}
 	
 }
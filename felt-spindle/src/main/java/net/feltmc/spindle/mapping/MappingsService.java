@@ -0,0 +1,63 @@
+package net.feltmc.spindle.mapping;
+
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Shares {@link Mappings} between the projects of a build, so every distinct set of sources and pruning
+ * is loaded once per build rather than once per project. The mappings are dropped when the build finishes.
+ * <p>
+ * Loading the same mappings again waits for the first load to finish, and at most
+ * {@link Parameters#getMaxConcurrentLoads() maxConcurrentLoads} different mappings are loaded at a time.
+ */
+public abstract class MappingsService implements BuildService<MappingsService.Parameters>, AutoCloseable {
+	
+	public static final String NAME = "felt-spindle:mappings";
+	
+	public interface Parameters extends BuildServiceParameters {
+		Property<Integer> getMaxConcurrentLoads();
+	}
+	
+	private record Key(String sources, Mappings.Pruning pruning) {
+	}
+	
+	private static final class Entry {
+		private Mappings mappings;
+	}
+	
+	private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+	private final Semaphore loads;
+	
+	public MappingsService() {
+		loads = new Semaphore(getParameters().getMaxConcurrentLoads().getOrElse(1));
+	}
+	
+	public Mappings get(Mappings.Sources sources, MappingCache cache, Mappings.Pruning pruning) throws IOException {
+		final Entry entry = entries.computeIfAbsent(new Key(sources.key(), pruning), x -> new Entry());
+		
+		synchronized (entry) {
+			if (entry.mappings == null) {
+				loads.acquireUninterruptibly();
+				try {
+					entry.mappings = new Mappings(sources, cache, pruning);
+				} finally {
+					loads.release();
+				}
+			}
+		}
+		
+		return entry.mappings;
+	}
+	
+	@Override
+	public void close() {
+		entries.clear();
+	}
+	
+}
@@ -0,0 +1,72 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Name and descriptor lookup for the fields or methods of a single class in one namespace.
+ * <p>
+ * Every member's descriptor in that namespace is read once, while building, so a lookup never maps
+ * a descriptor again.
+ */
+final class MemberIndex<T extends MappingTreeView.MemberMappingView> {
+	
+	// overloads in declaration order
+	private final Map<String, List<T>> byName;
+	// keyed by name followed by descriptor
+	private final Map<String, T> byNameAndDesc;
+	// members without a descriptor that are the only ones of their name, which match any descriptor
+	private final Map<String, T> undescribed;
+	
+	private MemberIndex(Map<String, List<T>> byName, Map<String, T> byNameAndDesc, Map<String, T> undescribed) {
+		this.byName = byName;
+		this.byNameAndDesc = byNameAndDesc;
+		this.undescribed = undescribed;
+	}
+	
+	static <T extends MappingTreeView.MemberMappingView> MemberIndex<T> build(Collection<? extends T> members, int namespace) {
+		final Map<String, List<T>> byName = new HashMap<>(members.size() * 4 / 3 + 1);
+		final Map<String, T> byNameAndDesc = new HashMap<>(members.size() * 4 / 3 + 1);
+		final Map<String, T> undescribed = new HashMap<>();
+		
+		for (T member : members) {
+			final String name = member.getName(namespace);
+			if (name == null)
+				continue;
+			
+			byName.computeIfAbsent(name, x -> new ArrayList<>(1)).add(member);
+			
+			final String desc = member.getDesc(namespace);
+			if (desc != null)
+				byNameAndDesc.putIfAbsent(name + desc, member);
+			else
+				undescribed.put(name, member);
+		}
+		
+		undescribed.values().removeIf(member -> byName.get(member.getName(namespace)).size() > 1);
+		return new MemberIndex<>(byName, byNameAndDesc, undescribed);
+	}
+	
+	/**
+	 * @return the first member named {@code name}, regardless of its descriptor
+	 */
+	@Nullable T get(String name) {
+		final List<T> overloads = byName.get(name);
+		return overloads != null ? overloads.get(0) : null;
+	}
+	
+	@Nullable T get(String name, @Nullable String desc) {
+		if (desc == null)
+			return get(name);
+		
+		final T member = byNameAndDesc.get(name + desc);
+		return member != null ? member : undescribed.get(name);
+	}
+	
+}
@@ -25,33 +25,206 @@ public class MergingMappingVisitor implements MappingVisitor {
 			.toList();
 	}
 	
-	@NotNull
-	private static MemoryMappingTree getMemoryMappingTree(String srcNamespace, Collection<MappingTree> sources, List<String> dstNamespaces) throws IOException {
+	/**
+	 * Starts an incremental merge into a tree with the given namespaces. Sources can then be 
+	 * {@link MergeTarget#add added} one at a time, e.g. as they finish loading; names in namespaces 
+	 * that aren't part of {@code dstNamespaces} are dropped.
+	 */
+	public static MergeTarget begin(String srcNamespace, List<String> dstNamespaces) throws IOException {
 		final MemoryMappingTree tree = new MemoryMappingTree();
 		tree.visitHeader();
 		tree.visitNamespaces(srcNamespace, dstNamespaces);
 		tree.visitContent();
 		
-		for (var source : sources) {
+		return new MergeTarget(tree);
+	}
+	
+	public static final class MergeTarget {
+		private final MemoryMappingTree tree;
+		
+		private MergeTarget(MemoryMappingTree tree) {
+			this.tree = tree;
+		}
+		
+		public MergeTarget add(MappingTree source) throws IOException {
 			final Map<Integer, Integer> namespaceMap = source
 				.getDstNamespaces()
 				.stream()
+				.filter(namespace -> tree.getNamespaceId(namespace) >= 0)
 				.collect(Collectors.toMap(source::getNamespaceId, tree::getNamespaceId));
 			
 			source.accept(new MergingMappingVisitor(tree, namespaceMap));
+			
+			return this;
 		}
 		
-		return tree;
+		public MemoryMappingTree finish() throws IOException {
+			tree.visitEnd();
+			
+			return tree;
+		}
+		
+		public MemoryMappingTree finish(String mergedNamespace, List<String> mergePriority) throws IOException {
+			fillMergedNamespace(tree, mergedNamespace, mergePriority);
+			
+			return tree;
+		}
 	}
 	
-	public static MemoryMappingTree merge(String srcNamespace, Collection<MappingTree> sources) throws IOException {
-		final List<String> dstNamespaces = getAllNamespaces(sources);
+	/**
+	 * Starts a streaming merge: mapping readers visit the returned {@link StreamingMerge} directly, one
+	 * after the other, and their names go straight into the merged tree without building a tree per source.
+	 * <p>
+	 * {@code mergedNamespace} is filled in for every element as soon as its names have been visited, from
+	 * the first of the {@code mergePriority} namespaces it has a name in, or its src name otherwise; 
+	 * elements visited again by a later source are simply updated.
+	 */
+	public static StreamingMerge stream(String srcNamespace, List<String> dstNamespaces, 
+										String mergedNamespace, List<String> mergePriority) throws IOException {
+		final MemoryMappingTree tree = new MemoryMappingTree();
+		tree.visitHeader();
+		tree.visitNamespaces(srcNamespace, Stream.concat(dstNamespaces.stream(), Stream.of(mergedNamespace)).distinct().toList());
+		tree.visitContent();
 		
-		final MemoryMappingTree tree = getMemoryMappingTree(srcNamespace, sources, dstNamespaces);
+		return new StreamingMerge(tree, mergedNamespace, mergePriority);
+	}
+	
+	public static final class StreamingMerge implements MappingVisitor {
+		private static final int DROPPED = -1;
 		
-		tree.visitEnd();
+		private final MemoryMappingTree tree;
+		private final int mergedNamespaceId;
+		private final int[] priorityIds;
+		// target namespace id of each of the current source's dst namespaces
+		private int[] namespaceMap = new int[0];
+		
+		private String className;
+		private String memberName;
+		private String memberDesc;
+		private int argPosition, lvtRowIndex, lvIndex, startOpIdx;
+		private String localName;
+		private MappingTree.ClassMapping visitingClass;
+		private MappingTree.MethodMapping visitingMethod;
+		
+		private StreamingMerge(MemoryMappingTree tree, String mergedNamespace, List<String> mergePriority) {
+			this.tree = tree;
+			this.mergedNamespaceId = tree.getNamespaceId(mergedNamespace);
+			this.priorityIds = mergePriority.stream().mapToInt(tree::getNamespaceId).filter(id -> id >= 0).toArray();
+		}
+		
+		@Override
+		public boolean visitHeader() {
+			return true;
+		}
+		
+		@Override
+		public void visitNamespaces(String srcNamespace, List<String> dstNamespaces) {
+			namespaceMap = new int[dstNamespaces.size()];
+			for (int i = 0; i < namespaceMap.length; i++) {
+				final int id = tree.getNamespaceId(dstNamespaces.get(i));
+				// a source can't fill the merged namespace itself
+				namespaceMap[i] = id >= 0 && id != mergedNamespaceId ? id : DROPPED;
+			}
+		}
+		
+		@Override
+		public boolean visitContent() {
+			return true;
+		}
+		
+		@Override
+		public boolean visitClass(String srcName) throws IOException {
+			className = srcName;
+			return tree.visitClass(srcName);
+		}
 		
-		return tree;
+		@Override
+		public boolean visitField(String srcName, String srcDesc) throws IOException {
+			memberName = srcName;
+			memberDesc = srcDesc;
+			return tree.visitField(srcName, srcDesc);
+		}
+		
+		@Override
+		public boolean visitMethod(String srcName, String srcDesc) throws IOException {
+			memberName = srcName;
+			memberDesc = srcDesc;
+			return tree.visitMethod(srcName, srcDesc);
+		}
+		
+		@Override
+		public boolean visitMethodArg(int argPosition, int lvIndex, String srcName) throws IOException {
+			this.argPosition = argPosition;
+			this.lvIndex = lvIndex;
+			localName = srcName;
+			return tree.visitMethodArg(argPosition, lvIndex, srcName);
+		}
+		
+		@Override
+		public boolean visitMethodVar(int lvtRowIndex, int lvIndex, int startOpIdx, String srcName) throws IOException {
+			this.lvtRowIndex = lvtRowIndex;
+			this.lvIndex = lvIndex;
+			this.startOpIdx = startOpIdx;
+			localName = srcName;
+			return tree.visitMethodVar(lvtRowIndex, lvIndex, startOpIdx, srcName);
+		}
+		
+		@Override
+		public void visitDstName(MappedElementKind targetKind, int namespace, String name) throws IOException {
+			final int targetNamespace = namespaceMap[namespace];
+			if (targetNamespace != DROPPED)
+				tree.visitDstName(targetKind, targetNamespace, name);
+		}
+		
+		@Override
+		public boolean visitElementContent(MappedElementKind targetKind) throws IOException {
+			// all of the element's names from this source have been visited, so its merged name can be settled
+			final MappingTree.ElementMapping element = switch (targetKind) {
+				case CLASS -> visitingClass = tree.getClass(className);
+				case FIELD -> visitingClass.getField(memberName, memberDesc);
+				case METHOD -> visitingMethod = visitingClass.getMethod(memberName, memberDesc);
+				case METHOD_ARG -> visitingMethod.getArg(argPosition, lvIndex, localName);
+				case METHOD_VAR -> visitingMethod.getVar(lvtRowIndex, lvIndex, startOpIdx, localName);
+			};
+			
+			element.setDstName(mergedName(element), mergedNamespaceId);
+			return tree.visitElementContent(targetKind);
+		}
+		
+		private String mergedName(MappingTree.ElementMapping element) {
+			for (int id : priorityIds) {
+				final String name = element.getDstName(id);
+				if (name != null)
+					return name;
+			}
+			
+			return element.getSrcName();
+		}
+		
+		@Override
+		public void visitComment(MappedElementKind targetKind, String comment) {}
+		
+		/**
+		 * Ends the current source; the merge only ends with {@link #finish()}.
+		 */
+		@Override
+		public boolean visitEnd() {
+			return true;
+		}
+		
+		public MemoryMappingTree finish() throws IOException {
+			tree.visitEnd();
+			
+			return tree;
+		}
+	}
+	
+	public static MemoryMappingTree merge(String srcNamespace, Collection<MappingTree> sources) throws IOException {
+		final MergeTarget target = begin(srcNamespace, getAllNamespaces(sources));
+		for (var source : sources)
+			target.add(source);
+		
+		return target.finish();
 	}
 	
 	public static MemoryMappingTree merge(String srcNamespace, List<MappingTree> sources, 
@@ -61,8 +234,14 @@ public class MergingMappingVisitor implements MappingVisitor {
 				.collect(Collectors.toSet())
 				.stream().toList();
 		
-		final MemoryMappingTree tree = getMemoryMappingTree(srcNamespace, sources, dstNamespaces);
+		final MergeTarget target = begin(srcNamespace, dstNamespaces);
+		for (var source : sources)
+			target.add(source);
 		
+		return target.finish(mergedNamespace, mergePriority);
+	}
+	
+	private static void fillMergedNamespace(MemoryMappingTree tree, String mergedNamespace, List<String> mergePriority) throws IOException {
 		final int mergedNamespaceId = tree.getNamespaceId(mergedNamespace);
 		
 		tree.accept(new MappingVisitor() {
@@ -164,8 +343,6 @@ public class MergingMappingVisitor implements MappingVisitor {
 		});
 		
 		tree.visitEnd();
-		
-		return tree;
 	}
 	
 	
@@ -208,7 +385,9 @@ public class MergingMappingVisitor implements MappingVisitor {
 	
 	@Override
 	public void visitDstName(MappedElementKind targetKind, int namespace, String name) throws IOException {
-		target.visitDstName(targetKind, namespaceMap.get(namespace), name);
+		final Integer targetNamespace = namespaceMap.get(namespace);
+		if (targetNamespace != null)
+			target.visitDstName(targetKind, targetNamespace, name);
 	}
 	
 	@Override
@@ -0,0 +1,70 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.MappingVisitor;
+import net.fabricmc.mappingio.adapter.ForwardingMappingVisitor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Drops dst names in unwanted namespaces, and optionally method args, local variables and comments,
+ * on their way from a mapping reader to the next visitor.
+ * <p>
+ * Readers skip the content of elements this refuses to visit, so pruned args and variables are never parsed past their header.
+ */
+final class PruningMappingVisitor extends ForwardingMappingVisitor {
+
+	private final Set<String> namespaces;
+	private final boolean keepArgs;
+	private final boolean keepVars;
+	private final boolean keepComments;
+	private boolean[] dropped = new boolean[0];
+
+	PruningMappingVisitor(MappingVisitor next, Set<String> namespaces, boolean keepArgs, boolean keepVars, boolean keepComments) {
+		super(next);
+		this.namespaces = namespaces;
+		this.keepArgs = keepArgs;
+		this.keepVars = keepVars;
+		this.keepComments = keepComments;
+	}
+
+	@Override
+	public void visitNamespaces(String srcNamespace, List<String> dstNamespaces) throws IOException {
+		dropped = new boolean[dstNamespaces.size()];
+		for (int i = 0; i < dropped.length; i++)
+			dropped[i] = !namespaces.contains(dstNamespaces.get(i));
+
+		super.visitNamespaces(srcNamespace, dstNamespaces);
+	}
+
+	@Override
+	public boolean visitMethodArg(int argPosition, int lvIndex, String srcName) throws IOException {
+		return keepArgs && super.visitMethodArg(argPosition, lvIndex, srcName);
+	}
+
+	@Override
+	public boolean visitMethodVar(int lvtRowIndex, int lvIndex, int startOpIdx, String srcName) throws IOException {
+		return keepVars && super.visitMethodVar(lvtRowIndex, lvIndex, startOpIdx, srcName);
+	}
+
+	@Override
+	public void visitDstName(MappedElementKind targetKind, int namespace, String name) throws IOException {
+		if (!dropped[namespace])
+			super.visitDstName(targetKind, namespace, name);
+	}
+
+	@Override
+	public void visitDstDesc(MappedElementKind targetKind, int namespace, String desc) throws IOException {
+		if (!dropped[namespace])
+			super.visitDstDesc(targetKind, namespace, desc);
+	}
+
+	@Override
+	public void visitComment(MappedElementKind targetKind, String comment) throws IOException {
+		if (keepComments)
+			super.visitComment(targetKind, comment);
+	}
+
+}
@@ -0,0 +1,126 @@
+package net.feltmc.spindle.processors;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import net.feltmc.spindle.access.AccessChanges;
+import net.feltmc.spindle.access.AccessWidenerModel.Access;
+
+/**
+ * Applies access widener changes to the access flags of a class and its members, the same way
+ * Fabric Loader widens them at runtime.
+ */
+final class AccessChangingClassVisitor extends ClassVisitor {
+	private final Map<String, AccessChanges.ClassChanges> changes;
+	private String className;
+	private int classAccess;
+	private AccessChanges.ClassChanges classChanges;
+
+	AccessChangingClassVisitor(int asmVersion, ClassVisitor classVisitor, Map<String, AccessChanges.ClassChanges> changes) {
+		super(asmVersion, classVisitor);
+		this.changes = changes;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		className = name;
+		classAccess = access;
+		classChanges = changes.get(name);
+		super.visit(version, classChanges == null ? access : changeClassAccess(access, classChanges.access()), name, signature, superName, interfaces);
+	}
+
+	@Override
+	public void visitInnerClass(String name, String outerName, String innerName, int access) {
+		// The InnerClasses attribute of the nested class and of its outer classes has to agree with the class itself
+		final AccessChanges.ClassChanges innerChanges = changes.get(name);
+		super.visitInnerClass(name, outerName, innerName, innerChanges == null ? access : changeClassAccess(access, innerChanges.access()));
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+		if (classChanges != null) {
+			access = changeFieldAccess(access, classChanges.field(name, descriptor));
+		}
+
+		return super.visitField(access, name, descriptor, signature, value);
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+		if (classChanges == null) {
+			return super.visitMethod(access, name, descriptor, signature, exceptions);
+		}
+
+		final MethodVisitor methodVisitor = super.visitMethod(changeMethodAccess(access, name, classChanges.method(name, descriptor)), name, descriptor, signature, exceptions);
+
+		return new MethodVisitor(api, methodVisitor) {
+			@Override
+			public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+				// Private methods are called with invokespecial, which can't dispatch to an override once they're widened
+				if (opcode == Opcodes.INVOKESPECIAL && owner.equals(className) && !name.equals("<init>")
+						&& !classChanges.method(name, descriptor).isEmpty()) {
+					opcode = (classAccess & Opcodes.ACC_INTERFACE) != 0 ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL;
+				}
+
+				super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
+			}
+		};
+	}
+
+	static int changeClassAccess(int access, Set<Access> changes) {
+		if (changes.contains(Access.EXTENDABLE)) {
+			return makePublic(access) & ~Opcodes.ACC_FINAL;
+		} else if (changes.contains(Access.ACCESSIBLE)) {
+			return makePublic(access);
+		}
+
+		return access;
+	}
+
+	static int changeFieldAccess(int access, Set<Access> changes) {
+		if (changes.contains(Access.ACCESSIBLE)) {
+			access = makePublic(access);
+		}
+
+		if (changes.contains(Access.MUTABLE)) {
+			access &= ~Opcodes.ACC_FINAL;
+		}
+
+		return access;
+	}
+
+	private int changeMethodAccess(int access, String name, Set<Access> changes) {
+		final boolean accessible = changes.contains(Access.ACCESSIBLE);
+		final boolean extendable = changes.contains(Access.EXTENDABLE);
+
+		if (accessible && extendable) {
+			return makePublic(access) & ~Opcodes.ACC_FINAL;
+		} else if (extendable) {
+			return makeProtected(access) & ~Opcodes.ACC_FINAL;
+		} else if (accessible) {
+			// A private method made public mustn't start being overridden by subclasses that happen to declare the same method
+			final boolean virtual = (access & Opcodes.ACC_PRIVATE) != 0 && (access & Opcodes.ACC_STATIC) == 0
+					&& (classAccess & Opcodes.ACC_INTERFACE) == 0 && !name.equals("<init>");
+			return makePublic(access) | (virtual ? Opcodes.ACC_FINAL : 0);
+		}
+
+		return access;
+	}
+
+	private static int makePublic(int access) {
+		return access & ~(Opcodes.ACC_PRIVATE | Opcodes.ACC_PROTECTED) | Opcodes.ACC_PUBLIC;
+	}
+
+	private static int makeProtected(int access) {
+		if ((access & Opcodes.ACC_PUBLIC) != 0) {
+			return access;
+		}
+
+		return access & ~Opcodes.ACC_PRIVATE | Opcodes.ACC_PROTECTED;
+	}
+}
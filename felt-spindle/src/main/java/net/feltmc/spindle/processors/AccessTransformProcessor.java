@@ -0,0 +1,79 @@
+package net.feltmc.spindle.processors;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.feltmc.spindle.access.AccessChanges;
+
+/**
+ * The access half of {@link SpindleJarProcessor}: bakes the entries of the access widener's spindle block
+ * into the access flags of the named Minecraft jar, so the access transformer already applies to the
+ * classes the project compiles and runs against.
+ * <p>
+ * Only applies when {@code applyATInDev} is enabled; Loom caches the processed jar by the spec, which
+ * changes only when the entries themselves do.
+ */
+public final class AccessTransformProcessor {
+	private static final Logger LOGGER = LoggerFactory.getLogger(AccessTransformProcessor.class);
+
+	private AccessTransformProcessor() {
+	}
+
+	static @Nullable AccessTransformProcessor.Spec createSpec(RegularFileProperty accessWidenerPath, Property<Boolean> enabled) {
+		if (!enabled.getOrElse(false) || !accessWidenerPath.isPresent()) {
+			return null;
+		}
+
+		final File accessWidener = accessWidenerPath.get().getAsFile();
+
+		if (!accessWidener.isFile()) {
+			return null;
+		}
+
+		final AccessChanges changes;
+
+		try {
+			changes = AccessChanges.readSpindleBlock(accessWidener.toPath());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read " + accessWidener, e);
+		}
+
+		if (changes == null) {
+			LOGGER.warn("applyATInDev is enabled, but {} has no spindle block", accessWidener);
+			return null;
+		}
+
+		return changes.isEmpty() ? null : new Spec(changes);
+	}
+
+	public record Spec(AccessChanges changes) {
+	}
+
+	/**
+	 * @return the jar entries the changes apply to
+	 */
+	static Set<String> getEntryNames(Map<String, AccessChanges.ClassChanges> changes) {
+		final Set<String> entryNames = new HashSet<>();
+
+		for (String className : changes.keySet()) {
+			// The outer classes list the nested class in their InnerClasses attribute, which has to change too
+			for (int i = className.indexOf('$'); i != -1; i = className.indexOf('$', i + 1)) {
+				entryNames.add(className.substring(0, i) + ".class");
+			}
+
+			entryNames.add(className + ".class");
+		}
+
+		return entryNames;
+	}
+}
@@ -24,63 +24,48 @@
 
 package net.feltmc.spindle.processors;
 
-import java.io.IOException;
-import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-import javax.inject.Inject;
-
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import org.jetbrains.annotations.Nullable;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.FieldNode;
-import org.objectweb.asm.tree.InsnNode;
-import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MethodNode;
-import org.objectweb.asm.tree.TypeInsnNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.fabricmc.loom.api.mappings.layered.MappingsNamespace;
-import net.fabricmc.loom.api.processor.MinecraftJarProcessor;
-import net.fabricmc.loom.api.processor.ProcessorContext;
 import net.fabricmc.loom.api.processor.SpecContext;
-import net.fabricmc.loom.util.Constants;
-import net.fabricmc.loom.util.Pair;
-import net.fabricmc.loom.util.ZipUtils;
 import net.fabricmc.loom.util.fmj.FabricModJson;
 import net.fabricmc.mappingio.tree.MappingTree;
 import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import net.feltmc.spindle.util.Checksum;
+import net.feltmc.spindle.util.DescriptorRemapper;
 
-public abstract class ClassOverlayProcessor implements MinecraftJarProcessor<ClassOverlayProcessor.Spec> {
+/**
+ * The overlay half of {@link SpindleJarProcessor}: reading the overlays mods declare in their
+ * {@code fabric.mod.json}, remapping them to named and adding them to the classes they target.
+ */
+public final class ClassOverlayProcessor {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ClassOverlayProcessor.class);
 
-	private final String name;
-
-	@Inject
-	public ClassOverlayProcessor(String name) {
-		this.name = name;
+	private ClassOverlayProcessor() {
 	}
 
-	@Override
-	public String getName() {
-		return name;
-	}
-
-	@Override
-	public @Nullable ClassOverlayProcessor.Spec buildSpec(SpecContext context) {
+	static @Nullable ClassOverlayProcessor.Spec createSpec(SpecContext context) {
 		List<OverlayedClass> overlayedClasses = new ArrayList<>();
 
 		overlayedClasses.addAll(OverlayedClass.fromMods(context.localMods()));
@@ -96,63 +81,81 @@ public abstract class ClassOverlayProcessor implements MinecraftJarProcessor<Cla
 		return new Spec(overlayedClasses);
 	}
 
-	public record Spec(List<OverlayedClass> overlayedClasses) implements MinecraftJarProcessor.Spec {
+	/**
+	 * Loom reprocesses the jar whenever the spec's hash changes, so the overlays are kept in a canonical
+	 * order and compared by a content fingerprint; reordering mods or dependencies changes neither.
+	 */
+	public static final class Spec {
+		private static final Comparator<OverlayedClass> ORDER = Comparator.comparing(OverlayedClass::targetName)
+				.thenComparing(OverlayedClass::modId);
+
+		private final List<OverlayedClass> overlayedClasses;
+		private final String fingerprint;
+
+		Spec(List<OverlayedClass> overlayedClasses) {
+			// Stable sort, so the overlays of a single mod keep their declared order
+			this.overlayedClasses = overlayedClasses.stream().sorted(ORDER).toList();
+			this.fingerprint = computeFingerprint(this.overlayedClasses);
+		}
+
+		List<OverlayedClass> overlayedClasses() {
+			return overlayedClasses;
+		}
+
+		public String fingerprint() {
+			return fingerprint;
+		}
+
+		private static String computeFingerprint(List<OverlayedClass> overlayedClasses) {
+			final MessageDigest digest = Checksum.sha1();
+
+			for (OverlayedClass overlayedClass : overlayedClasses) {
+				digest.update((overlayedClass.modId() + ' ' + overlayedClass.targetName() + '\n').getBytes(StandardCharsets.UTF_8));
+				update(digest, overlayedClass);
+			}
+
+			return Checksum.hex(digest.digest());
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Spec spec && fingerprint.equals(spec.fingerprint);
+		}
+
+		@Override
+		public int hashCode() {
+			return fingerprint.hashCode();
+		}
 	}
 
-	@Override
-	public void processJar(Path jar, Spec spec, ProcessorContext context) throws IOException {
-		// Remap from intermediary->named
-		final MemoryMappingTree mappings = context.getMappings();
+	// Remap from intermediary->named
+	static List<OverlayedClass> remap(Spec spec, MemoryMappingTree mappings) {
 		final int intermediaryIndex = mappings.getNamespaceId(MappingsNamespace.INTERMEDIARY.toString());
 		final int namedIndex = mappings.getNamespaceId(MappingsNamespace.NAMED.toString());
-		final List<OverlayedClass> remappedOverlayedClasses = spec.overlayedClasses().stream()
-				.map(overlayedClass -> remap(overlayedClass, s -> mappings.mapClassName(s, intermediaryIndex, namedIndex)))
+		final DescriptorRemapper remapper = new DescriptorRemapper(s -> mappings.mapClassName(s, intermediaryIndex, namedIndex));
+		return spec.overlayedClasses().stream()
+				.map(overlayedClass -> remap(overlayedClass, remapper))
 				.toList();
-
-		try {
-			ZipUtils.transform(jar, getTransformers(remappedOverlayedClasses));
-		} catch (IOException e) {
-			throw new RuntimeException("Failed to apply overlays to " + jar, e);
-		}
 	}
 
-	private OverlayedClass remap(OverlayedClass in, Function<String, String> remapper) {
+	private static OverlayedClass remap(OverlayedClass in, DescriptorRemapper remapper) {
 		Function<Type, Type> typeRemapper = inType -> {
-			if (inType.getSort() != Type.OBJECT && inType.getSort() != Type.ARRAY) {
+			if (inType.getSort() != Type.OBJECT && inType.getSort() != Type.ARRAY && inType.getSort() != Type.METHOD) {
 				return inType;
 			}
 
-			Type remappableType;
-			int dimension;
-
-			if (inType.getSort() == Type.ARRAY) {
-				dimension = inType.getDimensions();
-				remappableType = inType.getElementType();
-			} else {
-				dimension = 0;
-				remappableType = inType;
-			}
-
-			String remappedClassName = remapper.apply(remappableType.getInternalName());
-			return Type.getType("[".repeat(dimension) + Type.getObjectType(remappedClassName).getDescriptor());
+			return Type.getType(remapper.map(inType.getDescriptor()));
 		};
 
 		return new OverlayedClass(
 				in.modId(),
-				remapper.apply(in.targetName()),
+				remapper.mapClassName(in.targetName()),
 				in.overlays().stream().map(o -> o.remap(typeRemapper)).collect(Collectors.toList())
 		);
 	}
 
-	private List<Pair<String, ZipUtils.UnsafeUnaryOperator<byte[]>>> getTransformers(List<OverlayedClass> overlayedClasses) {
-		return overlayedClasses.stream()
-				.collect(Collectors.groupingBy(OverlayedClass::targetName))
-				.entrySet()
-				.stream()
-				.map(entry -> {
-					final String zipEntry = entry.getKey().replaceAll("\\.", "/") + ".class";
-					return new Pair<>(zipEntry, getTransformer(entry.getValue()));
-				}).toList();
+	static String entryName(String className) {
+		return className.replaceAll("\\.", "/") + ".class";
 	}
 
 	private static int getAccess(String visibility, boolean isStatic) {
@@ -170,74 +173,88 @@ public abstract class ClassOverlayProcessor implements MinecraftJarProcessor<Cla
 		return baseFlag;
 	}
 
-	private static void mergeOverlayedClasses(int asmVersion, ClassNode classNode, List<OverlayedClass> overlayedClasses) {
+	/**
+	 * @return a hash of everything {@link OverlayingClassVisitor} adds to a class, in the order it's added
+	 */
+	static String fingerprint(List<OverlayedClass> overlayedClasses) {
+		final MessageDigest digest = Checksum.sha1();
+
 		for (OverlayedClass overlayedClass : overlayedClasses) {
-			var overlayData = overlayedClass.overlays();
-
-			for (Overlay overlay : overlayData) {
-				if (overlay instanceof FieldOverlay fOverlay) {
-					classNode.fields.add(new FieldNode(fOverlay.accessFlag(), fOverlay.name(), fOverlay.descriptor().getDescriptor(), null, null));
-				} else if (overlay instanceof MethodOverlay mOverlay) {
-					MethodNode mNode = new MethodNode(asmVersion);
-					mNode.name = mOverlay.name();
-					mNode.desc = mOverlay.methodType.getDescriptor();
-					mNode.access = mOverlay.accessFlag();
-					//  NEW java/lang/AssertionError
-					//  DUP
-					//  INVOKESPECIAL java/lang/AssertionError.<init> ()V
-					//  ATHROW
-					mNode.maxStack = 2;
-					int argsAndReturnSize = mOverlay.methodType.getArgumentsAndReturnSizes();
-					mNode.maxLocals = (argsAndReturnSize >> 2) + (argsAndReturnSize & 0x3);
-					mNode.instructions.add(new TypeInsnNode(Opcodes.NEW, "java/lang/AssertionError"));
-					mNode.instructions.add(new InsnNode(Opcodes.DUP));
-					mNode.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "java/lang/AssertionError", "<init>", "()V"));
-					mNode.instructions.add(new InsnNode(Opcodes.ATHROW));
-					classNode.methods.add(mNode);
-				}
-			}
+			update(digest, overlayedClass);
 		}
+
+		return Checksum.hex(digest.digest());
 	}
 
-	private ZipUtils.UnsafeUnaryOperator<byte[]> getTransformer(List<OverlayedClass> overlayedClasses) {
-		return input -> {
-			final ClassReader reader = new ClassReader(input);
-			final ClassNode node = new ClassNode();
-			reader.accept(node, 0);
-			mergeOverlayedClasses(Constants.ASM_VERSION, node, overlayedClasses);
-			final ClassWriter writer = new ClassWriter(0);
-			node.accept(writer);
-			return writer.toByteArray();
-		};
+	private static void update(MessageDigest digest, OverlayedClass overlayedClass) {
+		for (Overlay overlay : overlayedClass.overlays()) {
+			final String descriptor = overlay instanceof FieldOverlay fOverlay ? fOverlay.descriptor().getDescriptor() : ((MethodOverlay) overlay).methodType().getDescriptor();
+			final String kind = overlay instanceof FieldOverlay ? "field" : "method";
+			digest.update((kind + ' ' + overlay.accessFlag() + ' ' + overlay.name() + ' ' + descriptor + '\n').getBytes(StandardCharsets.UTF_8));
+		}
 	}
 
-	@Override
-	public MappingsProcessor<Spec> processMappings() {
-		return (mappings, spec, context) -> {
-			if (!MappingsNamespace.INTERMEDIARY.toString().equals(mappings.getSrcNamespace())) {
-				throw new IllegalStateException("Mapping tree must have intermediary src mappings not " + mappings.getSrcNamespace());
+	static class OverlayingClassVisitor extends ClassVisitor {
+		private final List<OverlayedClass> overlayedClasses;
+
+		OverlayingClassVisitor(int asmVersion, ClassVisitor classVisitor, List<OverlayedClass> overlayedClasses) {
+			super(asmVersion, classVisitor);
+			this.overlayedClasses = overlayedClasses;
+		}
+
+		@Override
+		public void visitEnd() {
+			for (OverlayedClass overlayedClass : overlayedClasses) {
+				for (Overlay overlay : overlayedClass.overlays()) {
+					if (overlay instanceof FieldOverlay fOverlay) {
+						final FieldVisitor fieldVisitor = super.visitField(fOverlay.accessFlag(), fOverlay.name(), fOverlay.descriptor().getDescriptor(), null, null);
+						fieldVisitor.visitEnd();
+					} else if (overlay instanceof MethodOverlay mOverlay) {
+						final MethodVisitor methodVisitor = super.visitMethod(mOverlay.accessFlag(), mOverlay.name(), mOverlay.methodType().getDescriptor(), null, null);
+						//  NEW java/lang/AssertionError
+						//  DUP
+						//  INVOKESPECIAL java/lang/AssertionError.<init> ()V
+						//  ATHROW
+						methodVisitor.visitCode();
+						methodVisitor.visitTypeInsn(Opcodes.NEW, "java/lang/AssertionError");
+						methodVisitor.visitInsn(Opcodes.DUP);
+						methodVisitor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/AssertionError", "<init>", "()V", false);
+						methodVisitor.visitInsn(Opcodes.ATHROW);
+						int argsAndReturnSize = mOverlay.methodType().getArgumentsAndReturnSizes();
+						methodVisitor.visitMaxs(2, (argsAndReturnSize >> 2) + (argsAndReturnSize & 0x3));
+						methodVisitor.visitEnd();
+					}
+				}
 			}
 
-			Map<String, List<OverlayedClass>> map = spec.overlayedClasses().stream()
-					.collect(Collectors.groupingBy(OverlayedClass::targetName));
+			super.visitEnd();
+		}
+	}
 
-			for (Map.Entry<String, List<OverlayedClass>> entry : map.entrySet()) {
-				final String className = entry.getKey();
-				final List<OverlayedClass> overlayedClasses = entry.getValue();
+	static boolean processMappings(MemoryMappingTree mappings, Spec spec) {
+		if (!MappingsNamespace.INTERMEDIARY.toString().equals(mappings.getSrcNamespace())) {
+			throw new IllegalStateException("Mapping tree must have intermediary src mappings not " + mappings.getSrcNamespace());
+		}
 
-				MappingTree.ClassMapping classMapping = mappings.getClass(className);
+		Map<String, List<OverlayedClass>> map = spec.overlayedClasses().stream()
+				.collect(Collectors.groupingBy(OverlayedClass::targetName));
 
-				if (classMapping == null) {
-					final String modIds = overlayedClasses.stream().map(OverlayedClass::modId).distinct().collect(Collectors.joining(","));
-					LOGGER.warn("Failed to find class ({}) to add overlays from mod(s) ({})", className, modIds);
-					continue;
-				}
+		for (Map.Entry<String, List<OverlayedClass>> entry : map.entrySet()) {
+			final String className = entry.getKey();
+			final List<OverlayedClass> overlayedClasses = entry.getValue();
 
-				classMapping.setComment(appendComment(classMapping.getComment(), overlayedClasses));
+			MappingTree.ClassMapping classMapping = mappings.getClass(className);
+
+			if (classMapping == null) {
+				final String modIds = overlayedClasses.stream().map(OverlayedClass::modId).distinct().collect(Collectors.joining(","));
+				LOGGER.warn("Failed to find class ({}) to add overlays from mod(s) ({})", className, modIds);
+				continue;
 			}
 
-			return true;
-		};
+			classMapping.setComment(appendComment(classMapping.getComment(), overlayedClasses));
+		}
+
+		return true;
 	}
 
 	private static String appendComment(String comment, List<OverlayedClass> overlayedClasses) {
@@ -262,7 +279,7 @@ public abstract class ClassOverlayProcessor implements MinecraftJarProcessor<Cla
 		return comment;
 	}
 
-	interface Overlay {
+	public interface Overlay {
 		int accessFlag();
 
 		String name();
@@ -270,33 +287,23 @@ public abstract class ClassOverlayProcessor implements MinecraftJarProcessor<Cla
 		Overlay remap(Function<Type, Type> remapper);
 	}
 
-	record FieldOverlay(String name, Type descriptor, int accessFlag) implements Overlay {
+	public record FieldOverlay(String name, Type descriptor, int accessFlag) implements Overlay {
 		@Override
 		public Overlay remap(Function<Type, Type> remapper) {
 			return new FieldOverlay(name, remapper.apply(descriptor), accessFlag);
 		}
 	}
 
-	record MethodOverlay(String name, Type methodType, int accessFlag) implements Overlay {
+	public record MethodOverlay(String name, Type methodType, int accessFlag) implements Overlay {
 		@Override
 		public Overlay remap(Function<Type, Type> remapper) {
-			Type[] oldArgumentTypes = methodType.getArgumentTypes();
-			Type[] newArgumentTypes = new Type[oldArgumentTypes.length];
-
-			for (int i = 0; i < newArgumentTypes.length; i++) {
-				newArgumentTypes[i] = remapper.apply(oldArgumentTypes[i]);
-			}
-
-			Type newReturnType = remapper.apply(methodType.getReturnType());
-			Type newMethodType = Type.getMethodType(newReturnType, newArgumentTypes);
-
-			return new MethodOverlay(name, newMethodType, accessFlag);
+			return new MethodOverlay(name, remapper.apply(methodType), accessFlag);
 		}
 	}
 
 	private static final String FMJ_KEY = "felt-spindle:overlays";
 
-	private record OverlayedClass(String modId, String targetName, List<Overlay> overlays) {
+	public record OverlayedClass(String modId, String targetName, List<Overlay> overlays) {
 		public static List<OverlayedClass> fromMod(FabricModJson fabricModJson) {
 			final String modId = fabricModJson.getId();
 			final JsonElement jsonElement = fabricModJson.getCustom(FMJ_KEY);
@@ -305,8 +312,10 @@ public abstract class ClassOverlayProcessor implements MinecraftJarProcessor<Cla
 				return Collections.emptyList();
 			}
 
-			final JsonObject addedOverlays = jsonElement.getAsJsonObject();
+			return parse(modId, jsonElement.getAsJsonObject());
+		}
 
+		private static List<OverlayedClass> parse(String modId, JsonObject addedOverlays) {
 			final List<OverlayedClass> result = new ArrayList<>();
 
 			for (String className : addedOverlays.keySet()) {
@@ -344,10 +353,10 @@ public abstract class ClassOverlayProcessor implements MinecraftJarProcessor<Cla
 					}
 				}
 
-				result.add(new OverlayedClass(modId, className, parsedOverlays));
+				result.add(new OverlayedClass(modId, className, List.copyOf(parsedOverlays)));
 			}
 
-			return result;
+			return List.copyOf(result);
 		}
 
 		public static List<OverlayedClass> fromMods(List<FabricModJson> fabricModJsons) {
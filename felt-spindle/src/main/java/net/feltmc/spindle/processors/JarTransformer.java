@@ -0,0 +1,154 @@
+package net.feltmc.spindle.processors;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import net.fabricmc.loom.util.ZipUtils;
+import net.feltmc.spindle.util.AtomicFiles;
+
+/**
+ * Rewrites entries of a jar in place, like {@link ZipUtils#transform}, but runs the transformers in
+ * parallel on the common fork-join pool.
+ * <p>
+ * Entries that aren't transformed are copied as their raw compressed bytes by {@link RawZipRewriter},
+ * so only the transformed entries are inflated and deflated again.
+ * <p>
+ * The rewritten jar keeps the original entry order and entry metadata, timestamps included, so
+ * transforming the same jar the same way always produces the same bytes.
+ */
+public final class JarTransformer {
+	private JarTransformer() {
+	}
+
+	/**
+	 * @param transformers transformers keyed by entry name, entries missing from the jar are ignored
+	 * @return the number of transformed entries
+	 */
+	public static int transform(Path jar, Map<String, ZipUtils.UnsafeUnaryOperator<byte[]>> transformers) throws IOException {
+		if (transformers.isEmpty()) {
+			return 0;
+		}
+
+		final Path output = AtomicFiles.createSibling(jar);
+
+		try {
+			try (ZipFile zip = new ZipFile(jar.toFile())) {
+				final Map<String, ForkJoinTask<byte[]>> transformed = submitTransforms(zip, transformers);
+
+				if (!RawZipRewriter.rewrite(jar, output, transformed)) {
+					rewrite(zip, output, transformed);
+				}
+
+				AtomicFiles.replaceIfChanged(output, jar);
+				return transformed.size();
+			}
+		} finally {
+			Files.deleteIfExists(output);
+		}
+	}
+
+	// Slow path for zips the raw rewriter can't handle, this inflates and deflates every entry
+	private static void rewrite(ZipFile zip, Path output, Map<String, ForkJoinTask<byte[]>> transformed) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(output)))) {
+			final Enumeration<? extends ZipEntry> entries = zip.entries();
+
+			while (entries.hasMoreElements()) {
+				final ZipEntry entry = entries.nextElement();
+				final ForkJoinTask<byte[]> task = transformed.get(entry.getName());
+
+				if (task == null) {
+					copyEntry(zip, entry, out);
+				} else {
+					writeEntry(entry, join(task, entry.getName()), out);
+				}
+			}
+		}
+	}
+
+	private static Map<String, ForkJoinTask<byte[]>> submitTransforms(ZipFile zip, Map<String, ZipUtils.UnsafeUnaryOperator<byte[]>> transformers) {
+		final Map<String, ForkJoinTask<byte[]>> tasks = new HashMap<>();
+
+		for (Map.Entry<String, ZipUtils.UnsafeUnaryOperator<byte[]>> transformer : transformers.entrySet()) {
+			final ZipEntry entry = zip.getEntry(transformer.getKey());
+
+			if (entry == null) {
+				continue;
+			}
+
+			// ZipFile is safe to read from several threads
+			tasks.put(entry.getName(), ForkJoinPool.commonPool().submit(() -> {
+				try (InputStream in = zip.getInputStream(entry)) {
+					return transformer.getValue().apply(in.readAllBytes());
+				}
+			}));
+		}
+
+		return tasks;
+	}
+
+	static byte[] join(ForkJoinTask<byte[]> task, String entryName) throws IOException {
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException cause) {
+				throw cause;
+			} else if (e.getCause() instanceof UncheckedIOException cause) {
+				throw cause.getCause();
+			}
+
+			throw new IOException("Failed to transform " + entryName, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while transforming " + entryName, e);
+		}
+	}
+
+	private static void copyEntry(ZipFile zip, ZipEntry entry, ZipOutputStream out) throws IOException {
+		final ZipEntry copy = new ZipEntry(entry);
+
+		if (copy.getMethod() != ZipEntry.STORED) {
+			// may compress to a different size than the original
+			copy.setCompressedSize(-1);
+		}
+
+		out.putNextEntry(copy);
+
+		try (InputStream in = zip.getInputStream(entry)) {
+			in.transferTo(out);
+		}
+
+		out.closeEntry();
+	}
+
+	private static void writeEntry(ZipEntry original, byte[] data, ZipOutputStream out) throws IOException {
+		final ZipEntry entry = new ZipEntry(original);
+		entry.setSize(data.length);
+
+		if (entry.getMethod() == ZipEntry.STORED) {
+			final CRC32 crc = new CRC32();
+			crc.update(data);
+			entry.setCrc(crc.getValue());
+			entry.setCompressedSize(data.length);
+		} else {
+			entry.setCompressedSize(-1);
+		}
+
+		out.putNextEntry(entry);
+		out.write(data);
+		out.closeEntry();
+	}
+}
@@ -0,0 +1,140 @@
+package net.feltmc.spindle.processors;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.fabricmc.loom.util.ZipUtils;
+import net.feltmc.spindle.util.AtomicFiles;
+import net.feltmc.spindle.util.Checksum;
+
+/**
+ * Records, per transformed entry of a processed jar, the hash of its original bytes, a fingerprint of
+ * the overlays applied to it and the resulting bytes.
+ * <p>
+ * Loom hands processors a fresh copy of the Minecraft jar whenever any overlay changes, so this
+ * is what lets a rerun only transform the classes whose overlays actually changed and reuse the
+ * previous output for every other one. Safe to use from the parallel transforms.
+ * <p>
+ * Loom names the processed jar after the spec, so the manifest is kept under a name that only
+ * depends on the Minecraft version and environment, see {@link #fileFor}, where it survives any
+ * change to the overlays.
+ */
+final class OverlayManifest {
+	private static final int MAGIC = 0x5350434F;
+	private static final int VERSION = 1;
+
+	private record Entry(String inputHash, String fingerprint, byte[] output) {
+	}
+
+	private final Path file;
+	private final Map<String, Entry> loaded;
+	private final Map<String, Entry> used = new ConcurrentHashMap<>();
+	private final AtomicInteger reused = new AtomicInteger();
+	private volatile boolean modified;
+
+	private OverlayManifest(Path file, Map<String, Entry> loaded) {
+		this.file = file;
+		this.loaded = loaded;
+	}
+
+	static Path fileFor(Path directory, String mcVersion, boolean client, boolean server) {
+		final String environment = client && server ? "merged" : client ? "client" : "server";
+		return directory.resolve("overlays-" + mcVersion + '-' + environment + ".bin");
+	}
+
+	static OverlayManifest load(Path file) throws IOException {
+		final Map<String, Entry> entries = new HashMap<>();
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+				final int count = in.readInt();
+
+				for (int i = 0; i < count; i++) {
+					final String name = in.readUTF();
+					final String inputHash = in.readUTF();
+					final String fingerprint = in.readUTF();
+					final byte[] output = new byte[in.readInt()];
+					in.readFully(output);
+					entries.put(name, new Entry(inputHash, fingerprint, output));
+				}
+			}
+		} catch (NoSuchFileException | EOFException | UTFDataFormatException e) {
+			// missing or unreadable, every entry gets transformed again
+			entries.clear();
+		}
+
+		return new OverlayManifest(file, entries);
+	}
+
+	/**
+	 * @return the bytes recorded for the entry if both its input and fingerprint are unchanged, otherwise
+	 * the result of running {@code transformer}, which is then recorded
+	 */
+	byte[] apply(String name, String fingerprint, byte[] input, ZipUtils.UnsafeUnaryOperator<byte[]> transformer) throws IOException {
+		final String inputHash = Checksum.hex(Checksum.sha1().digest(input));
+		final Entry recorded = loaded.get(name);
+
+		if (recorded != null && recorded.inputHash().equals(inputHash) && recorded.fingerprint().equals(fingerprint)) {
+			used.put(name, recorded);
+			reused.incrementAndGet();
+			return recorded.output();
+		}
+
+		final byte[] output = transformer.apply(input);
+		used.put(name, new Entry(inputHash, fingerprint, output));
+		modified = true;
+		return output;
+	}
+
+	/**
+	 * @return the number of entries whose recorded bytes were reused since loading
+	 */
+	int reused() {
+		return reused.get();
+	}
+
+	/**
+	 * Writes the entries used since loading, dropping the ones that no longer have overlays.
+	 */
+	void save() throws IOException {
+		if (!modified && used.size() == loaded.size()) {
+			return;
+		}
+
+		Files.createDirectories(file.toAbsolutePath().getParent());
+		final Path tempFile = AtomicFiles.createSibling(file);
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(used.size());
+
+				for (Map.Entry<String, Entry> entry : new TreeMap<>(used).entrySet()) {
+					out.writeUTF(entry.getKey());
+					out.writeUTF(entry.getValue().inputHash());
+					out.writeUTF(entry.getValue().fingerprint());
+					out.writeInt(entry.getValue().output().length);
+					out.write(entry.getValue().output());
+				}
+			}
+
+			AtomicFiles.replaceIfChanged(tempFile, file);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package net.feltmc.spindle.processors;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Rewrites a zip file by copying the local headers, compressed data and central directory records
+ * of unmodified entries byte for byte, so only transformed entries are ever compressed again.
+ * <p>
+ * Only plain single-disk zips are handled; zip64, encrypted entries and compression methods other
+ * than stored and deflated make {@link #rewrite} bail out before writing anything. It also bails out,
+ * leaving a partly written output, if the rewritten zip turns out to need zip64.
+ */
+final class RawZipRewriter {
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+	private static final int DATA_DESCRIPTOR = 0x08074b50;
+
+	private static final int LOCAL_HEADER_SIZE = 30;
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+
+	private static final int FLAG_ENCRYPTED = 1;
+	private static final int FLAG_DATA_DESCRIPTOR = 1 << 3;
+	private static final int METHOD_STORED = 0;
+	private static final int METHOD_DEFLATED = 8;
+	private static final long MAX_U32 = 0xFFFFFFFFL;
+
+	private RawZipRewriter() {
+	}
+
+	private record Entry(String name, ByteBuffer centralHeader, long localOffset, long length, int flags, int method) {
+	}
+
+	private static final class Zip64RequiredException extends IOException {
+		Zip64RequiredException() {
+			super("Rewritten zip needs zip64, which isn't supported");
+		}
+	}
+
+	/**
+	 * @param transformed new content for the transformed entries, keyed by entry name
+	 * @return {@code false} if the zip uses features this can't copy, in which case the output has to be written some other way
+	 */
+	static boolean rewrite(Path zip, Path output, Map<String, ForkJoinTask<byte[]>> transformed) throws IOException {
+		try (FileChannel in = FileChannel.open(zip, StandardOpenOption.READ)) {
+			final long size = in.size();
+			final int tailLength = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + 0xFFFF);
+			final ByteBuffer tail = read(in, size - tailLength, tailLength);
+			final int end = findEndOfCentralDirectory(tail);
+
+			if (end == -1 || (end >= 20 && tail.getInt(end - 20) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR)) {
+				return false;
+			}
+
+			final int entryCount = u16(tail, end + 10);
+			final long centralDirectorySize = u32(tail, end + 12);
+			final long centralDirectoryOffset = u32(tail, end + 16);
+
+			if (u16(tail, end + 4) != 0 || u16(tail, end + 6) != 0 || entryCount != u16(tail, end + 8)
+					|| entryCount == 0xFFFF || centralDirectorySize == MAX_U32 || centralDirectoryOffset == MAX_U32) {
+				return false;
+			}
+
+			final List<Entry> entries = readEntries(in, read(in, centralDirectoryOffset, (int) centralDirectorySize), entryCount);
+
+			if (entries == null) {
+				return false;
+			}
+
+			try (FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				write(in, out, entries, transformed, tail.slice(end + END_OF_CENTRAL_DIRECTORY_SIZE, tailLength - end - END_OF_CENTRAL_DIRECTORY_SIZE));
+			} catch (Zip64RequiredException e) {
+				return false;
+			}
+
+			return true;
+		}
+	}
+
+	private static int findEndOfCentralDirectory(ByteBuffer tail) {
+		for (int i = tail.limit() - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+			// the comment has to run exactly to the end of the file
+			if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY && i + END_OF_CENTRAL_DIRECTORY_SIZE + u16(tail, i + 20) == tail.limit()) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private static List<Entry> readEntries(FileChannel in, ByteBuffer centralDirectory, int entryCount) throws IOException {
+		final List<Entry> entries = new ArrayList<>(entryCount);
+		int position = 0;
+
+		for (int i = 0; i < entryCount; i++) {
+			if (position + CENTRAL_HEADER_SIZE > centralDirectory.limit() || centralDirectory.getInt(position) != CENTRAL_HEADER) {
+				return null;
+			}
+
+			final int flags = u16(centralDirectory, position + 8);
+			final int method = u16(centralDirectory, position + 10);
+			final long compressedSize = u32(centralDirectory, position + 20);
+			final long uncompressedSize = u32(centralDirectory, position + 24);
+			final int nameLength = u16(centralDirectory, position + 28);
+			final int headerLength = CENTRAL_HEADER_SIZE + nameLength + u16(centralDirectory, position + 30) + u16(centralDirectory, position + 32);
+			final long localOffset = u32(centralDirectory, position + 42);
+
+			if ((flags & FLAG_ENCRYPTED) != 0 || (method != METHOD_STORED && method != METHOD_DEFLATED)
+					|| compressedSize == MAX_U32 || uncompressedSize == MAX_U32 || localOffset == MAX_U32) {
+				return null;
+			}
+
+			final byte[] name = new byte[nameLength];
+			centralDirectory.get(position + CENTRAL_HEADER_SIZE, name);
+
+			final ByteBuffer localHeader = read(in, localOffset, LOCAL_HEADER_SIZE);
+
+			if (localHeader.getInt(0) != LOCAL_HEADER) {
+				return null;
+			}
+
+			final long dataEnd = localOffset + LOCAL_HEADER_SIZE + u16(localHeader, 26) + u16(localHeader, 28) + compressedSize;
+			long length = dataEnd - localOffset;
+
+			if ((flags & FLAG_DATA_DESCRIPTOR) != 0) {
+				// the descriptor's signature is optional
+				length += read(in, dataEnd, 4).getInt(0) == DATA_DESCRIPTOR ? 16 : 12;
+			}
+
+			final ByteBuffer centralHeader = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+			centralHeader.put(0, centralDirectory, position, headerLength);
+			entries.add(new Entry(new String(name, StandardCharsets.UTF_8), centralHeader, localOffset, length, flags, method));
+			position += headerLength;
+		}
+
+		return entries;
+	}
+
+	private static void write(FileChannel in, FileChannel out, List<Entry> entries, Map<String, ForkJoinTask<byte[]>> transformed, ByteBuffer comment) throws IOException {
+		final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+		long position = 0;
+
+		for (Entry entry : entries) {
+			final ByteBuffer centralHeader = entry.centralHeader();
+			final ForkJoinTask<byte[]> task = transformed.get(entry.name());
+
+			// all ones marks the value as stored in a zip64 extra field
+			if (position >= MAX_U32) {
+				throw new Zip64RequiredException();
+			}
+
+			centralHeader.putInt(42, (int) position);
+
+			if (task == null) {
+				transferFully(in, entry.localOffset(), entry.length(), out);
+				position += entry.length();
+			} else {
+				position += writeTransformed(in, out, entry, JarTransformer.join(task, entry.name()));
+			}
+
+			centralDirectory.write(centralHeader.array());
+		}
+
+		if (position >= MAX_U32 || centralDirectory.size() >= MAX_U32) {
+			throw new Zip64RequiredException();
+		}
+
+		final ByteBuffer end = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE + comment.remaining()).order(ByteOrder.LITTLE_ENDIAN);
+		end.putInt(END_OF_CENTRAL_DIRECTORY);
+		end.putShort((short) 0);
+		end.putShort((short) 0);
+		end.putShort((short) entries.size());
+		end.putShort((short) entries.size());
+		end.putInt(centralDirectory.size());
+		end.putInt((int) position);
+		end.putShort((short) comment.remaining());
+		end.put(comment);
+
+		writeFully(out, ByteBuffer.wrap(centralDirectory.toByteArray()));
+		writeFully(out, end.flip());
+	}
+
+	private static long writeTransformed(FileChannel in, FileChannel out, Entry entry, byte[] data) throws IOException {
+		final ByteBuffer original = read(in, entry.localOffset(), LOCAL_HEADER_SIZE);
+		final int nameAndExtraLength = u16(original, 26) + u16(original, 28);
+		final ByteBuffer nameAndExtra = read(in, entry.localOffset() + LOCAL_HEADER_SIZE, nameAndExtraLength);
+
+		final CRC32 crc = new CRC32();
+		crc.update(data);
+		final byte[] compressed = entry.method() == METHOD_DEFLATED ? deflate(data) : data;
+		final int flags = entry.flags() & ~FLAG_DATA_DESCRIPTOR; // sizes are known up front now
+
+		final ByteBuffer localHeader = ByteBuffer.allocate(LOCAL_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		localHeader.put(0, original, 0, LOCAL_HEADER_SIZE);
+		localHeader.putShort(6, (short) flags);
+		localHeader.putInt(14, (int) crc.getValue());
+		localHeader.putInt(18, compressed.length);
+		localHeader.putInt(22, data.length);
+
+		final ByteBuffer centralHeader = entry.centralHeader();
+		centralHeader.putShort(8, (short) flags);
+		centralHeader.putInt(16, (int) crc.getValue());
+		centralHeader.putInt(20, compressed.length);
+		centralHeader.putInt(24, data.length);
+
+		writeFully(out, localHeader);
+		writeFully(out, nameAndExtra);
+		writeFully(out, ByteBuffer.wrap(compressed));
+
+		return LOCAL_HEADER_SIZE + nameAndExtraLength + compressed.length;
+	}
+
+	private static byte[] deflate(byte[] data) {
+		final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+
+			final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+			final byte[] buffer = new byte[8192];
+
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	private static ByteBuffer read(FileChannel in, long position, int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+
+		while (buffer.hasRemaining()) {
+			if (in.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of zip at " + (position + buffer.position()));
+			}
+		}
+
+		return buffer.flip();
+	}
+
+	private static void transferFully(FileChannel in, long position, long length, FileChannel out) throws IOException {
+		long transferred = 0;
+
+		while (transferred < length) {
+			final long count = in.transferTo(position + transferred, length - transferred, out);
+
+			if (count <= 0) {
+				throw new EOFException("Unexpected end of zip at " + (position + transferred));
+			}
+
+			transferred += count;
+		}
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			out.write(buffer);
+		}
+	}
+
+	private static int u16(ByteBuffer buffer, int index) {
+		return buffer.getShort(index) & 0xFFFF;
+	}
+
+	private static long u32(ByteBuffer buffer, int index) {
+		return buffer.getInt(index) & MAX_U32;
+	}
+}
@@ -0,0 +1,149 @@
+package net.feltmc.spindle.processors;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.inject.Inject;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.fabricmc.loom.api.processor.MinecraftJarProcessor;
+import net.fabricmc.loom.api.processor.ProcessorContext;
+import net.fabricmc.loom.api.processor.SpecContext;
+import net.fabricmc.loom.util.Constants;
+import net.fabricmc.loom.util.ZipUtils;
+import net.feltmc.spindle.access.AccessChanges;
+
+/**
+ * Applies both the overlays of {@link ClassOverlayProcessor} and the access changes of
+ * {@link AccessTransformProcessor} in a single pass, so every affected class is read and written once
+ * and the jar is only rewritten once.
+ * <p>
+ * The access changes see the class as it was read, the overlays are added after them and keep the
+ * access they declare.
+ */
+public abstract class SpindleJarProcessor implements MinecraftJarProcessor<SpindleJarProcessor.Spec> {
+	private static final Logger LOGGER = LoggerFactory.getLogger(SpindleJarProcessor.class);
+
+	private final String name;
+	private final RegularFileProperty accessWidenerPath;
+	private final Property<Boolean> applyAccessChanges;
+	private final File manifestDirectory;
+	private final Property<String> minecraftVersion;
+
+	/**
+	 * @param manifestDirectory where the {@link OverlayManifest overlay manifests} are kept, per Minecraft version and environment
+	 */
+	@Inject
+	public SpindleJarProcessor(String name, RegularFileProperty accessWidenerPath, Property<Boolean> applyAccessChanges, File manifestDirectory, Property<String> minecraftVersion) {
+		this.name = name;
+		this.accessWidenerPath = accessWidenerPath;
+		this.applyAccessChanges = applyAccessChanges;
+		this.manifestDirectory = manifestDirectory;
+		this.minecraftVersion = minecraftVersion;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public @Nullable SpindleJarProcessor.Spec buildSpec(SpecContext context) {
+		final ClassOverlayProcessor.Spec overlays = ClassOverlayProcessor.createSpec(context);
+		final AccessTransformProcessor.Spec access = AccessTransformProcessor.createSpec(accessWidenerPath, applyAccessChanges);
+
+		if (overlays == null && access == null) {
+			return null;
+		}
+
+		return new Spec(overlays, access);
+	}
+
+	public record Spec(@Nullable ClassOverlayProcessor.Spec overlays, @Nullable AccessTransformProcessor.Spec access) implements MinecraftJarProcessor.Spec {
+	}
+
+	@Override
+	public void processJar(Path jar, Spec spec, ProcessorContext context) throws IOException {
+		final List<ClassOverlayProcessor.OverlayedClass> overlayedClasses = spec.overlays() == null ? List.of() : ClassOverlayProcessor.remap(spec.overlays(), context.getMappings());
+		final Map<String, AccessChanges.ClassChanges> changes = spec.access() == null ? Map.of() : spec.access().changes().classes();
+		// The access changes are few and rarely edited, so any change to them just transforms everything again
+		final String accessFingerprint = spec.access() == null ? "" : spec.access().changes().fingerprint();
+
+		final Path manifestFile = OverlayManifest.fileFor(manifestDirectory.toPath(), minecraftVersion.get(), context.includesClient(), context.includesServer());
+
+		try {
+			process(jar, manifestFile, overlayedClasses, changes, accessFingerprint);
+		} catch (IOException e) {
+			throw new RuntimeException("Failed to process " + jar, e);
+		}
+	}
+
+	/**
+	 * Applies overlays and access changes to a jar in place, outside of Loom.
+	 *
+	 * @return the number of classes whose previous output was reused
+	 */
+	public static int process(Path jar, Path manifestFile, List<ClassOverlayProcessor.OverlayedClass> overlayedClasses, Map<String, AccessChanges.ClassChanges> changes, String accessFingerprint) throws IOException {
+		final OverlayManifest manifest = OverlayManifest.load(manifestFile);
+		final int transformed = JarTransformer.transform(jar, getTransformers(overlayedClasses, changes, accessFingerprint, manifest));
+		manifest.save();
+
+		LOGGER.info("Processed {} classes of {}, reused the previous output of {}", transformed, jar.getFileName(), manifest.reused());
+		return manifest.reused();
+	}
+
+	private static Map<String, ZipUtils.UnsafeUnaryOperator<byte[]>> getTransformers(List<ClassOverlayProcessor.OverlayedClass> overlayedClasses, Map<String, AccessChanges.ClassChanges> changes, String accessFingerprint, OverlayManifest manifest) {
+		final Map<String, List<ClassOverlayProcessor.OverlayedClass>> overlaysByEntry = overlayedClasses.stream()
+				.collect(Collectors.groupingBy(overlayedClass -> ClassOverlayProcessor.entryName(overlayedClass.targetName())));
+		final Set<String> entryNames = new HashSet<>(overlaysByEntry.keySet());
+		entryNames.addAll(AccessTransformProcessor.getEntryNames(changes));
+
+		final Map<String, ZipUtils.UnsafeUnaryOperator<byte[]>> transformers = new HashMap<>();
+
+		for (String entryName : entryNames) {
+			final List<ClassOverlayProcessor.OverlayedClass> overlays = overlaysByEntry.getOrDefault(entryName, List.of());
+			final String fingerprint = ClassOverlayProcessor.fingerprint(overlays) + accessFingerprint;
+			transformers.put(entryName, input -> manifest.apply(entryName, fingerprint, input, in -> transform(in, overlays, changes)));
+		}
+
+		return transformers;
+	}
+
+	static byte[] transform(byte[] input, List<ClassOverlayProcessor.OverlayedClass> overlayedClasses, Map<String, AccessChanges.ClassChanges> changes) {
+		final ClassReader reader = new ClassReader(input);
+		// Sharing the reader lets the writer copy the constant pool and every untouched method as-is
+		final ClassWriter writer = new ClassWriter(reader, 0);
+		ClassVisitor visitor = writer;
+
+		if (!overlayedClasses.isEmpty()) {
+			visitor = new ClassOverlayProcessor.OverlayingClassVisitor(Constants.ASM_VERSION, visitor, overlayedClasses);
+		}
+
+		if (!changes.isEmpty()) {
+			visitor = new AccessChangingClassVisitor(Constants.ASM_VERSION, visitor, changes);
+		}
+
+		reader.accept(visitor, 0);
+		return writer.toByteArray();
+	}
+
+	@Override
+	public MappingsProcessor<Spec> processMappings() {
+		return (mappings, spec, context) -> spec.overlays() != null && ClassOverlayProcessor.processMappings(mappings, spec.overlays());
+	}
+}
@@ -0,0 +1,152 @@
+package net.feltmc.spindle.task;
+
+import net.feltmc.spindle.access.AccessTransformerConverter;
+import net.feltmc.spindle.access.AccessWidenerModel;
+import net.feltmc.spindle.access.ResolutionCache;
+import net.feltmc.spindle.mapping.MappingCache;
+import net.feltmc.spindle.mapping.Mappings;
+import net.feltmc.spindle.mapping.MappingsService;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Does the work of {@link GenerateAccessWidenerFromTransformerTask}.
+ * <p>
+ * The entries missing from the resolution cache are resolved up front, in parallel, and the fragment is
+ * then written from the AT in order, so it comes out the same as converting one line at a time.
+ */
+public abstract class ConvertAccessTransformerAction implements WorkAction<ConvertAccessTransformerAction.Parameters> {
+	
+	public interface Parameters extends WorkParameters {
+		RegularFileProperty getProjectMappingsFile();
+		
+		Property<String> getMinecraftVersion();
+		
+		Property<String> getSrgUrl();
+		
+		Property<String> getMojMapClientUrl();
+		
+		Property<String> getMojMapClientSha1();
+		
+		Property<String> getMojMapServerUrl();
+		
+		Property<String> getMojMapServerSha1();
+		
+		RegularFileProperty getAccessTransformerPath();
+		
+		Property<Boolean> getIncludeSourceComments();
+		
+		RegularFileProperty getAccessWidenerFragment();
+		
+		DirectoryProperty getMappingsCacheDirectory();
+		
+		Property<Boolean> getOffline();
+		
+		RegularFileProperty getResolutionCacheFile();
+		
+		Property<MappingsService> getMappingsService();
+	}
+	
+	@Override
+	public void execute() {
+		try {
+			convert(getParameters());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	private static void convert(Parameters parameters) throws IOException {
+		final String mcVersion = parameters.getMinecraftVersion().get();
+		final Mappings.Download srg = parameters.getSrgUrl().isPresent() ? new Mappings.Download(parameters.getSrgUrl().get(), null) : Mappings.srgDownload(mcVersion);
+		final Mappings.Sources sources = new Mappings.Sources(parameters.getProjectMappingsFile().get().getAsFile(), mcVersion, srg,
+			new Mappings.Download(parameters.getMojMapClientUrl().get(), parameters.getMojMapClientSha1().get()),
+			new Mappings.Download(parameters.getMojMapServerUrl().get(), parameters.getMojMapServerSha1().get()));
+		final MappingCache cache = new MappingCache(parameters.getMappingsCacheDirectory().get().getAsFile().toPath(), parameters.getOffline().getOrElse(false));
+		
+		convert(parameters.getAccessTransformerPath().get().getAsFile(), parameters.getAccessWidenerFragment().get().getAsFile(),
+			parameters.getResolutionCacheFile().get().getAsFile().toPath(), sources.key(), parameters.getIncludeSourceComments().getOrElse(true),
+			() -> parameters.getMappingsService().get().get(sources, cache, Mappings.Pruning.ACCESS_TRANSFORMER));
+	}
+	
+	/**
+	 * Converts an AT into an access widener fragment, outside of any build.
+	 *
+	 * @param sourcesKey the {@link Mappings.Sources#key() key} of the sources {@code mappings} loads from
+	 */
+	public static void convert(File transformerFile, File fragmentFile, Path resolutionCacheFile, String sourcesKey, boolean includeComments, AccessTransformerConverter.MappingsLoader mappings) throws IOException {
+		final List<String> lines = Files.readAllLines(transformerFile.toPath());
+		
+		// mappings are only loaded if an entry isn't cached yet
+		final ResolutionCache resolutionCache = ResolutionCache.load(resolutionCacheFile, sourcesKey);
+		final Set<String> unresolved = new LinkedHashSet<>();
+		for (String line : lines) {
+			final String content = AccessTransformerConverter.content(line);
+			if (!content.isEmpty() && !AccessTransformerConverter.isClassEntry(content) && resolutionCache.get(content) == null)
+				unresolved.add(content);
+		}
+		final AccessTransformerConverter converter = new AccessTransformerConverter(mappings);
+		
+		final List<String> toResolve = List.copyOf(unresolved);
+		final List<List<String>> results = converter.convertAll(toResolve);
+		final Map<String, List<String>> resolved = new HashMap<>();
+		for (int i = 0; i < toResolve.size(); i++) {
+			resolved.put(toResolve.get(i), results.get(i));
+			resolutionCache.put(toResolve.get(i), results.get(i));
+		}
+		
+		final AccessWidenerModel model = new AccessWidenerModel();
+		
+		// comments before the first entry, or set apart from the next one by a blank line, head the
+		// fragment rather than being sorted along with an entry; those after the last entry end it
+		final List<String> comments = new ArrayList<>();
+		boolean seenEntry = false;
+		for (String line : lines) {
+			if (line.startsWith("#")) { // keep AT comments, attached to the next entry
+				if (includeComments)
+					comments.add(line);
+				
+				continue;
+			} else if (line.isBlank()) {
+				model.addHeader(comments);
+				comments.clear();
+				continue;
+			}
+			
+			if (!seenEntry) {
+				model.addHeader(comments);
+				comments.clear();
+				seenEntry = true;
+			}
+			
+			if (includeComments)
+				comments.add("# " + line); // insert AT line for reference and debugging
+			
+			final String content = AccessTransformerConverter.content(line);
+			final List<String> converted;
+			if (AccessTransformerConverter.isClassEntry(content)) // these don't need mappings, no point caching them
+				converted = converter.convert(content);
+			else
+				converted = resolved.containsKey(content) ? resolved.get(content) : resolutionCache.get(content);
+			
+			model.add(converted, comments);
+			comments.clear();
+		}
+		model.addTrailer(comments);
+		
+		try (BufferedWriter fragmentWriter = new BufferedWriter(new FileWriter(fragmentFile))) {
+			model.write(fragmentWriter);
+		}
+		
+		resolutionCache.save();
+	}
+	
+}
@@ -0,0 +1,115 @@
+package net.feltmc.spindle.task;
+
+import net.feltmc.spindle.access.AccessWidenerModel;
+import net.feltmc.spindle.util.AtomicFiles;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.TaskAction;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Replaces the {@code # spindle {} block of the access widener with the fragment generated
+ * by {@link GenerateAccessWidenerFromTransformerTask}.
+ * <p>
+ * The access widener is edited in place, so it's both an input and an output of this task and
+ * its state can't be tracked; the task itself only copies the already converted entries.
+ */
+public abstract class UpdateAccessWidenerTask extends DefaultTask {
+	
+	@InputFile
+	public abstract RegularFileProperty getAccessWidenerFragment();
+	
+	@Internal
+	public abstract RegularFileProperty getAccessWidenerPath();
+	
+	@Input
+	@Optional
+	public abstract Property<Boolean> getOverwriteAccessWidener();
+	
+	public UpdateAccessWidenerTask() {
+		doNotTrackState("Updates the access widener in place");
+	}
+	
+	@TaskAction
+	public void updateAccessWidener() throws IOException {
+		if (!getAccessWidenerPath().isPresent())
+			throw new AssertionError("accessWidenerPath not set in build.gradle!");
+		
+		final boolean overwriteWidener = getOverwriteAccessWidener().getOrElse(false);
+		
+		final File widenerFile = getAccessWidenerPath().get().getAsFile();
+		final File fragmentFile = getAccessWidenerFragment().get().getAsFile();
+		
+		// written next to the widener, so it can be moved over it atomically; never left behind in the sources
+		final Path tempFile = AtomicFiles.createSibling(widenerFile.toPath());
+		
+		try {
+			try (BufferedWriter tempWriter = Files.newBufferedWriter(tempFile)) {
+				if (overwriteWidener) {
+					tempWriter.write("accessWidener v2 named");
+					tempWriter.newLine();
+					tempWriter.newLine();
+					tempWriter.write("# spindle {");
+					tempWriter.newLine();
+					
+					copyFragment(fragmentFile, tempWriter);
+					
+					tempWriter.write("# }");
+					tempWriter.newLine();
+				} else {
+					try (BufferedReader widenerReader = new BufferedReader(new FileReader(widenerFile))) {
+						String line;
+						
+						while ((line = widenerReader.readLine()) != null) {
+							tempWriter.write(line);
+							tempWriter.newLine();
+							if (line.matches(AccessWidenerModel.SPINDLE_BLOCK_START))
+								break;
+						}
+						if (line == null)
+							throw new AssertionError("No \"# spindle {\" block found!");
+						
+						copyFragment(fragmentFile, tempWriter);
+						
+						var foundEnd = false;
+						
+						while ((line = widenerReader.readLine()) != null) {
+							if (line.matches(AccessWidenerModel.SPINDLE_BLOCK_END)) {
+								foundEnd = true;
+								do {
+									tempWriter.write(line);
+									tempWriter.newLine();
+								} while ((line = widenerReader.readLine()) != null);
+								break;
+							}
+						}
+						
+						if (!foundEnd)
+							throw new AssertionError("No \"# }\" block found!");
+					}
+				}
+			}
+			
+			// an unchanged widener must keep its timestamp, or Loom reprocesses the Minecraft jars for nothing
+			if (!AtomicFiles.replaceIfChanged(tempFile, widenerFile.toPath()))
+				getLogger().info("Access widener {} is already up to date", widenerFile);
+		} finally {
+			Files.deleteIfExists(tempFile); // only still there if something failed
+		}
+	}
+	
+	private static void copyFragment(File fragmentFile, BufferedWriter writer) throws IOException {
+		try (BufferedReader fragmentReader = new BufferedReader(new FileReader(fragmentFile))) {
+			fragmentReader.transferTo(writer);
+		}
+	}
+	
+}
@@ -0,0 +1,41 @@
+package net.feltmc.spindle.util;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+public final class AtomicFiles {
+	
+	private AtomicFiles() {}
+	
+	/**
+	 * @return a temporary file next to {@code target}, so it can later be moved over it atomically
+	 */
+	public static Path createSibling(Path target) throws IOException {
+		return Files.createTempFile(target.toAbsolutePath().getParent(), target.getFileName().toString(), ".tmp");
+	}
+	
+	/**
+	 * Moves {@code source} over {@code target}, unless both already have the same content, in which
+	 * case {@code target} is left untouched (keeping its timestamp) and {@code source} is deleted.
+	 *
+	 * @return whether {@code target} was replaced
+	 */
+	public static boolean replaceIfChanged(Path source, Path target) throws IOException {
+		if (Files.isRegularFile(target) && Files.mismatch(source, target) == -1) {
+			Files.delete(source);
+			return false;
+		}
+		
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+		
+		return true;
+	}
+	
+}
@@ -0,0 +1,40 @@
+package net.feltmc.spindle.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+public final class Checksum {
+	
+	private Checksum() {}
+	
+	public static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError("SHA-1 not supported by this JVM", e);
+		}
+	}
+	
+	public static String sha1(Path file) throws IOException {
+		final MessageDigest digest = sha1();
+		final byte[] buffer = new byte[8192];
+		
+		try (InputStream in = Files.newInputStream(file)) {
+			int read;
+			while ((read = in.read(buffer)) != -1)
+				digest.update(buffer, 0, read);
+		}
+		
+		return hex(digest.digest());
+	}
+	
+	public static String hex(byte[] bytes) {
+		return HexFormat.of().formatHex(bytes);
+	}
+	
+}
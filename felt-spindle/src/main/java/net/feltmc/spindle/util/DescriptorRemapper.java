@@ -0,0 +1,296 @@
+package net.feltmc.spindle.util;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
+
+/**
+ * Remaps the class names in field and method descriptors as well as generic signatures.
+ * <p>
+ * Descriptors are parsed in a single pass that copies everything but class names straight from
+ * the input, and both remapped class names and whole descriptors are memoized, so repeated
+ * descriptors cost one map lookup. Class names are looked up by their region of the descriptor, so
+ * a memoized name is never copied out of it. Both memos hold a bounded number of entries; past that,
+ * new names and descriptors are mapped every time. Instances are safe to share between threads.
+ */
+public final class DescriptorRemapper {
+	
+	private static final int MEMO_CAPACITY = 1 << 15;
+	
+	private final UnaryOperator<String> classMapper;
+	private final Memo classNames = new Memo(MEMO_CAPACITY);
+	private final Memo descriptors = new Memo(MEMO_CAPACITY);
+	
+	/**
+	 * @param classMapper maps an internal class name, returning {@code null} if it has no mapping
+	 */
+	public DescriptorRemapper(UnaryOperator<String> classMapper) {
+		this.classMapper = classMapper;
+	}
+	
+	public String mapClassName(String internalName) {
+		return mapClassName(null, internalName, 0, internalName.length());
+	}
+	
+	/**
+	 * Maps the class named by {@code s} from {@code start} to {@code end}, or the inner class of that
+	 * name within {@code outer}, only copying the name out of {@code s} if it isn't memoized yet.
+	 */
+	private String mapClassName(@Nullable String outer, String s, int start, int end) {
+		final int hash = Memo.hash(outer, s, start, end);
+		final Memo.Entry cached = classNames.get(hash, outer, s, start, end);
+		if (cached != null)
+			return cached.value;
+		
+		final String internalName = outer != null ? outer + '$' + s.substring(start, end) : s.substring(start, end);
+		final String mapped = classMapper.apply(internalName);
+		final String result = mapped != null ? mapped : internalName;
+		classNames.put(new Memo.Entry(hash, internalName, result));
+		return result;
+	}
+	
+	/**
+	 * @return the original name of the class {@link #mapClassName(String, String, int, int) mapped} last
+	 * for that region, to find the names of its inner classes by
+	 */
+	private String className(@Nullable String outer, String s, int start, int end) {
+		final Memo.Entry cached = classNames.get(Memo.hash(outer, s, start, end), outer, s, start, end);
+		if (cached != null)
+			return cached.key;
+		
+		return outer != null ? outer + '$' + s.substring(start, end) : s.substring(start, end);
+	}
+	
+	/**
+	 * Maps a field or method descriptor, or a class, field or method signature.
+	 */
+	public String map(String signature) {
+		final int hash = signature.hashCode();
+		final Memo.Entry cached = descriptors.get(hash, null, signature, 0, signature.length());
+		if (cached != null)
+			return cached.value;
+		
+		final String result;
+		if (signature.indexOf('L') == -1) { // nothing but primitives
+			result = signature;
+		} else {
+			final StringBuilder out = new StringBuilder(signature.length() + 32);
+			int i = 0;
+			
+			if (signature.charAt(0) == '<')
+				i = typeParameters(signature, i, out);
+			
+			while (i < signature.length()) {
+				final char c = signature.charAt(i);
+				if (c == '(' || c == ')' || c == '^') {
+					out.append(c);
+					i++;
+				} else {
+					i = type(signature, i, out);
+				}
+			}
+			
+			result = out.toString();
+		}
+		
+		descriptors.put(new Memo.Entry(hash, signature, result));
+		return result;
+	}
+	
+	private int type(String s, int i, StringBuilder out) {
+		switch (s.charAt(i)) {
+			case 'L':
+				return classType(s, i, out);
+			case 'T': { // type variable, copied as-is
+				final int end = s.indexOf(';', i) + 1;
+				out.append(s, i, end);
+				return end;
+			}
+			case '[':
+				out.append('[');
+				return type(s, i + 1, out);
+			default: // primitive or void
+				out.append(s.charAt(i));
+				return i + 1;
+		}
+	}
+	
+	private int classType(String s, int i, StringBuilder out) {
+		int end = identifierEnd(s, ++i);
+		String mappedOuter = mapClassName(null, s, i, end);
+		out.append('L').append(mappedOuter);
+		// only needed for an inner class, which is rare outside of generic signatures
+		String outer = null;
+		int outerStart = i;
+		int outerEnd = end;
+		i = end;
+		
+		while (true) {
+			final char c = s.charAt(i);
+			
+			if (c == ';') {
+				out.append(';');
+				return i + 1;
+			} else if (c == '<') {
+				i = typeArguments(s, i, out);
+			} else if (c == '.') { // inner class of a parameterized type, only the simple name is written
+				end = identifierEnd(s, ++i);
+				outer = className(outer, s, outerStart, outerEnd);
+				final String mappedInner = mapClassName(outer, s, i, end);
+				
+				out.append('.');
+				if (mappedInner.length() > mappedOuter.length() + 1 && mappedInner.startsWith(mappedOuter) && mappedInner.charAt(mappedOuter.length()) == '$')
+					out.append(mappedInner, mappedOuter.length() + 1, mappedInner.length());
+				else
+					out.append(s, i, end);
+				
+				outerStart = i;
+				outerEnd = end;
+				mappedOuter = mappedInner;
+				i = end;
+			} else {
+				throw new IllegalArgumentException("Malformed signature: " + s);
+			}
+		}
+	}
+	
+	private int typeArguments(String s, int i, StringBuilder out) {
+		out.append('<');
+		i++;
+		
+		while (s.charAt(i) != '>') {
+			final char c = s.charAt(i);
+			if (c == '*') {
+				out.append(c);
+				i++;
+			} else if (c == '+' || c == '-') {
+				out.append(c);
+				i = type(s, i + 1, out);
+			} else {
+				i = type(s, i, out);
+			}
+		}
+		
+		out.append('>');
+		return i + 1;
+	}
+	
+	private int typeParameters(String s, int i, StringBuilder out) {
+		out.append('<');
+		i++;
+		
+		while (s.charAt(i) != '>') {
+			final int nameEnd = s.indexOf(':', i);
+			out.append(s, i, nameEnd);
+			i = nameEnd;
+			
+			// class bound (possibly empty) followed by any interface bounds
+			while (s.charAt(i) == ':') {
+				out.append(':');
+				i++;
+				
+				final char c = s.charAt(i);
+				if (c == 'L' || c == 'T' || c == '[')
+					i = type(s, i, out);
+			}
+		}
+		
+		out.append('>');
+		return i + 1;
+	}
+	
+	private static int identifierEnd(String s, int i) {
+		while (true) {
+			final char c = s.charAt(i);
+			if (c == ';' || c == '<' || c == '.')
+				return i;
+			i++;
+		}
+	}
+	
+	/**
+	 * A fixed-size open-addressing table looked up by a region of a string, optionally as an inner class
+	 * of an outer name, without allocating. Entries are only ever added, until it's three quarters full.
+	 */
+	private static final class Memo {
+		
+		record Entry(int hash, String key, String value) {
+		}
+		
+		private final AtomicReferenceArray<Entry> slots;
+		private final AtomicInteger size = new AtomicInteger();
+		private final int limit;
+		
+		Memo(int capacity) {
+			slots = new AtomicReferenceArray<>(capacity);
+			limit = capacity / 4 * 3;
+		}
+		
+		/**
+		 * @return the {@link String#hashCode() hash} of {@code outer + '$' + s.substring(start, end)}, or of
+		 * {@code s.substring(start, end)} without an outer name
+		 */
+		static int hash(@Nullable String outer, String s, int start, int end) {
+			int hash;
+			if (outer != null)
+				hash = outer.hashCode() * 31 + '$';
+			else if (start == 0 && end == s.length())
+				return s.hashCode();
+			else
+				hash = 0;
+			
+			for (int i = start; i < end; i++)
+				hash = hash * 31 + s.charAt(i);
+			
+			return hash;
+		}
+		
+		@Nullable Entry get(int hash, @Nullable String outer, String s, int start, int end) {
+			final int mask = slots.length() - 1;
+			for (int index = spread(hash) & mask; ; index = (index + 1) & mask) {
+				final Entry entry = slots.get(index);
+				if (entry == null)
+					return null;
+				if (entry.hash == hash && matches(entry.key, outer, s, start, end))
+					return entry;
+			}
+		}
+		
+		void put(Entry added) {
+			if (size.get() >= limit)
+				return;
+			
+			final int mask = slots.length() - 1;
+			for (int index = spread(added.hash) & mask; ; index = (index + 1) & mask) {
+				final Entry entry = slots.get(index);
+				if (entry == null) {
+					if (slots.compareAndSet(index, null, added)) {
+						size.incrementAndGet();
+						return;
+					}
+					
+					index = (index - 1) & mask; // look at the same slot again
+				} else if (entry.hash == added.hash && entry.key.equals(added.key)) {
+					return;
+				}
+			}
+		}
+		
+		private static boolean matches(String key, @Nullable String outer, String s, int start, int end) {
+			final int length = end - start;
+			if (outer == null)
+				return key.length() == length && key.regionMatches(0, s, start, length);
+			
+			return key.length() == outer.length() + 1 + length && key.startsWith(outer) && key.charAt(outer.length()) == '$'
+				&& key.regionMatches(outer.length() + 1, s, start, length);
+		}
+		
+		private static int spread(int hash) {
+			return hash ^ (hash >>> 16);
+		}
+		
+	}
+	
+}
@@ -0,0 +1,86 @@
+package net.feltmc.spindle;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the plugin in a real Loom project, which downloads Minecraft, so it only runs with {@code -PfunctionalTests}.
+ */
+public class ConfigurationCacheTest {
+	
+	private static final String TASK = ":generateAccessWidenerFromTransformer";
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	@Before
+	public void requireFunctionalTests() {
+		Assume.assumeTrue("functional tests are disabled", Boolean.getBoolean("felt.spindle.functionalTests"));
+	}
+	
+	@Test
+	public void reusesTheConfigurationCache() throws IOException {
+		final Path project = temp.getRoot().toPath();
+		Files.writeString(project.resolve("settings.gradle"), """
+			pluginManagement {
+				repositories {
+					maven { url = 'https://maven.fabricmc.net/' }
+					gradlePluginPortal()
+				}
+			}
+			rootProject.name = 'configuration-cache-test'
+			""");
+		Files.writeString(project.resolve("build.gradle"), """
+			plugins {
+				id 'fabric-loom'
+				id 'felt-spindle'
+			}
+			
+			dependencies {
+				minecraft 'com.mojang:minecraft:1.20.1'
+				mappings loom.officialMojangMappings()
+			}
+			
+			loom {
+				accessWidenerPath = file('test.accesswidener')
+			}
+			
+			spindle {
+				accessTransformerPath = file('accesstransformer.cfg')
+			}
+			""");
+		Files.writeString(project.resolve("test.accesswidener"), "accessWidener v2 named\n# spindle {\n# }\n");
+		Files.writeString(project.resolve("accesstransformer.cfg"), "public-f net.minecraft.client.Minecraft\n");
+		
+		final BuildResult first = run(project);
+		assertTrue(first.getOutput().contains("Configuration cache entry stored."));
+		assertEquals(TaskOutcome.SUCCESS, first.task(TASK).getOutcome());
+		
+		final BuildResult second = run(project);
+		assertTrue(second.getOutput().contains("Configuration cache entry reused."));
+		assertEquals(TaskOutcome.UP_TO_DATE, second.task(TASK).getOutcome());
+		assertTrue(Files.readString(project.resolve("test.accesswidener")).contains("transitive-extendable class net/minecraft/client/Minecraft"));
+	}
+	
+	private static BuildResult run(Path project) {
+		return GradleRunner.create()
+			.withProjectDir(project.toFile())
+			.withPluginClasspath()
+			.withArguments(TASK, "--configuration-cache", "--stacktrace")
+			.build();
+	}
+	
+}
@@ -0,0 +1,325 @@
+package net.feltmc.spindle;
+
+import net.feltmc.spindle.access.AccessChanges;
+import net.feltmc.spindle.fixtures.Fixtures;
+import net.feltmc.spindle.mapping.MappingCache;
+import net.feltmc.spindle.mapping.Mappings;
+import net.feltmc.spindle.processors.ClassOverlayProcessor;
+import net.feltmc.spindle.processors.SpindleJarProcessor;
+import net.feltmc.spindle.task.ConvertAccessTransformerAction;
+import net.feltmc.spindle.util.Checksum;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Times converting a large generated access transformer cold, warm and fully resolved, and the jar
+ * processor applying a large overlay set to a generated jar, cold and with its previous output reused.
+ * Each run has a wall-clock budget in milliseconds, {@code felt.spindle.budget.<run>}, and a peak heap
+ * budget in megabytes, {@code felt.spindle.budget.<run>.heapMb}.
+ * <p>
+ * These runs call the conversion and the jar processor directly, so they need neither Loom nor a
+ * download and are part of every test run. Their default budgets are the times and heap peaks measured
+ * on a single core, with a margin of a third to a half; reading each mapping source into a tree of its
+ * own before merging already takes the cold conversion over its heap budget.
+ * <p>
+ * The same work is also timed in whole Gradle builds of a project like {@code test-mod}, with the
+ * daemon's heap under {@code felt.spindle.budget.heapMb}. Loom downloads Minecraft for those, so they
+ * only run with {@code -PfunctionalTests}.
+ */
+public class PerformanceBudgetTest {
+	
+	private static final String GENERATE = ":generateAccessWidenerFromTransformer";
+	private static final int AT_LINES = 10000;
+	private static final int OVERLAYS_PER_CLASS = 200;
+	private static final List<String> OVERLAYED_CLASSES = List.of(
+		"net/minecraft/world/entity/Entity",
+		"net/minecraft/world/entity/LivingEntity",
+		"net/minecraft/world/entity/player/Player",
+		"net/minecraft/world/item/Item",
+		"net/minecraft/world/item/ItemStack",
+		"net/minecraft/world/level/Level",
+		"net/minecraft/world/level/block/Block",
+		"net/minecraft/world/level/block/state/BlockBehaviour",
+		"net/minecraft/server/MinecraftServer",
+		"net/minecraft/client/Minecraft");
+	private static final Pattern PEAK_HEAP = Pattern.compile("spindle-peak-heap=(\\d+)");
+	// every eighth class of the fixtures, with some of its fields opened up as well
+	private static final int DIRECT_OVERLAYED_CLASS_STEP = 8;
+	private static final int DIRECT_OVERLAYS_PER_CLASS = 20;
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	private final List<String> failures = new ArrayList<>();
+	private File testKitDir;
+	private Path project;
+	
+	@Test
+	public void staysWithinBudgetsWithoutLoom() throws IOException {
+		final Path fixtures = temp.newFolder("fixtures").toPath();
+		final Mappings.Sources sources = Fixtures.writeSources(fixtures);
+		final Path transformer = fixtures.resolve("accesstransformer.cfg");
+		Files.write(transformer, Fixtures.accessTransformer(AT_LINES));
+		final Path mappingsCache = fixtures.resolve("cache");
+		final Path resolutionCache = fixtures.resolve("at-resolution.bin");
+		
+		// without mappings or resolutions cached
+		convert("convertCold", sources, transformer, mappingsCache, resolutionCache);
+		
+		// with the mapping snapshot cached, but no resolutions
+		Files.delete(resolutionCache);
+		convert("convertWarm", sources, transformer, mappingsCache, resolutionCache);
+		
+		convert("convertResolved", sources, transformer, mappingsCache, resolutionCache);
+		
+		final List<ClassOverlayProcessor.OverlayedClass> overlays = new ArrayList<>();
+		final List<String> accessWidener = new ArrayList<>();
+		for (int c = 0; c < Fixtures.CLASSES; c += DIRECT_OVERLAYED_CLASS_STEP) {
+			final List<ClassOverlayProcessor.Overlay> members = new ArrayList<>();
+			for (int i = 0; i < DIRECT_OVERLAYS_PER_CLASS; i++) {
+				members.add(i % 2 == 0
+					? new ClassOverlayProcessor.FieldOverlay("felt$field" + i, Type.getType(Object.class), Opcodes.ACC_PUBLIC)
+					: new ClassOverlayProcessor.MethodOverlay("felt$method" + i, Type.getMethodType("(IJ)V"), Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC));
+			}
+			overlays.add(new ClassOverlayProcessor.OverlayedClass("performance", Fixtures.namedClass(c), members));
+			accessWidener.add("accessible field " + Fixtures.namedClass(c) + " " + Fixtures.namedField(0) + " I");
+		}
+		final AccessChanges changes = AccessChanges.parse(accessWidener);
+		
+		final Path jar = fixtures.resolve("minecraft.jar");
+		final Path manifest = fixtures.resolve("overlays.bin");
+		Fixtures.writeJar(jar);
+		assertEquals(0, process("processCold", jar, manifest, overlays, changes));
+		
+		// processing rewrites the jar in place, so start from the original again as Loom would
+		Fixtures.writeJar(jar);
+		assertEquals(overlays.size(), process("processReused", jar, manifest, overlays, changes));
+		
+		if (!failures.isEmpty())
+			fail(String.join("\n", failures));
+	}
+	
+	private void convert(String name, Mappings.Sources sources, Path transformer, Path mappingsCache, Path resolutionCache) throws IOException {
+		final Path fragment = transformer.resolveSibling("fragment.accesswidener");
+		timed(name, () -> ConvertAccessTransformerAction.convert(transformer.toFile(), fragment.toFile(), resolutionCache, sources.key(), true,
+			() -> new Mappings(sources, new MappingCache(mappingsCache, false), Mappings.Pruning.ACCESS_TRANSFORMER)));
+	}
+	
+	private int process(String name, Path jar, Path manifest, List<ClassOverlayProcessor.OverlayedClass> overlays, AccessChanges changes) throws IOException {
+		final int[] reused = new int[1];
+		timed(name, () -> reused[0] = SpindleJarProcessor.process(jar, manifest, overlays, changes.classes(), changes.fingerprint()));
+		return reused[0];
+	}
+	
+	private interface Run {
+		void run() throws IOException;
+	}
+	
+	private void timed(String name, Run run) throws IOException {
+		final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream().filter(x -> x.getType() == MemoryType.HEAP).toList();
+		System.gc();
+		heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+		
+		final long start = System.nanoTime();
+		run.run();
+		final long millis = (System.nanoTime() - start) / 1_000_000;
+		final long heapMb = heapPools.stream().mapToLong(x -> x.getPeakUsage().getUsed()).sum() / (1024 * 1024);
+		System.out.printf("%s: %d ms, %d MB peak heap%n", name, millis, heapMb);
+		
+		checkBudget(name, millis, Long.getLong("felt.spindle.budget." + name + ".heapMb", defaultHeapBudget(name)), heapMb);
+	}
+	
+	private static long defaultHeapBudget(String name) {
+		return switch (name) {
+			case "convertCold" -> 256;
+			case "convertWarm" -> 128;
+			case "convertResolved", "processCold" -> 96;
+			default -> 64;
+		};
+	}
+	
+	@Test
+	public void staysWithinBudgets() throws IOException {
+		Assume.assumeTrue("functional tests are disabled", Boolean.getBoolean("felt.spindle.functionalTests"));
+		
+		testKitDir = new File(System.getProperty("felt.spindle.testKitDir", new File(temp.getRoot(), "testkit").getPath()));
+		project = temp.newFolder("project").toPath();
+		writeProject();
+		
+		// sets Loom up and downloads Minecraft, which has nothing to do with spindle
+		writeOverlays(false);
+		run("prime", "help");
+		
+		// the jar processor runs while Loom configures the project
+		writeOverlays(true);
+		run("overlaysCold", "help");
+		run("overlaysNoOp", "help");
+		
+		// without mappings or resolutions cached
+		deleteRecursively(testKitDir.toPath().resolve("caches/felt-spindle/mappings"));
+		deleteRecursively(project.resolve("build/spindle"));
+		assertEquals(TaskOutcome.SUCCESS, run("atCold", GENERATE, "--rerun-tasks").task(GENERATE).getOutcome());
+		
+		// with the mapping files cached, but no resolutions
+		Files.delete(project.resolve("build/spindle/at-resolution.bin"));
+		assertEquals(TaskOutcome.SUCCESS, run("atWarm", GENERATE, "--rerun-tasks").task(GENERATE).getOutcome());
+		
+		assertEquals(TaskOutcome.UP_TO_DATE, run("atNoOp", GENERATE).task(GENERATE).getOutcome());
+		
+		if (!failures.isEmpty())
+			fail(String.join("\n", failures));
+	}
+	
+	private BuildResult run(String name, String... tasks) {
+		final List<String> arguments = new ArrayList<>(List.of(tasks));
+		arguments.add("reportPeakHeap");
+		
+		final long start = System.nanoTime();
+		final BuildResult result = GradleRunner.create()
+			.withProjectDir(project.toFile())
+			.withTestKitDir(testKitDir)
+			.withPluginClasspath()
+			.withArguments(arguments)
+			.build();
+		final long millis = (System.nanoTime() - start) / 1_000_000;
+		
+		final Matcher heap = PEAK_HEAP.matcher(result.getOutput());
+		assertTrue("no heap report in the output", heap.find());
+		final long heapMb = Long.parseLong(heap.group(1)) / (1024 * 1024);
+		System.out.printf("%s: %d ms, %d MB peak heap%n", name, millis, heapMb);
+		
+		// priming downloads Minecraft, which no budget could reasonably cover
+		if (!name.equals("prime"))
+			checkBudget(name, millis, Long.getLong("felt.spindle.budget.heapMb", 1536), heapMb);
+		
+		return result;
+	}
+	
+	private void checkBudget(String name, long millis, long heapBudget, long heapMb) {
+		final long budget = Long.getLong("felt.spindle.budget." + name, defaultBudget(name));
+		if (millis > budget)
+			failures.add("%s took %d ms, over its budget of %d ms".formatted(name, millis, budget));
+		
+		if (heapMb > heapBudget)
+			failures.add("%s peaked at %d MB of heap, over the budget of %d MB".formatted(name, heapMb, heapBudget));
+	}
+	
+	private static long defaultBudget(String name) {
+		return switch (name) {
+			case "convertCold" -> 10_000;
+			case "convertWarm", "processCold" -> 1_500;
+			case "convertResolved", "processReused" -> 750;
+			case "overlaysCold", "atCold" -> 120_000;
+			case "atWarm" -> 60_000;
+			default -> 30_000;
+		};
+	}
+	
+	private void writeProject() throws IOException {
+		final Path fixtures = project.resolve("fixtures");
+		final String mojMap = Fixtures.writeSources(fixtures).mojMapClient().url();
+		final String mojMapSha1 = Checksum.sha1(fixtures.resolve("client.txt"));
+		
+		Files.writeString(project.resolve("settings.gradle"), """
+			pluginManagement {
+				repositories {
+					maven { url = 'https://maven.fabricmc.net/' }
+					gradlePluginPortal()
+				}
+			}
+			rootProject.name = 'performance-test'
+			""");
+		Files.writeString(project.resolve("gradle.properties"), "org.gradle.jvmargs=-Xmx2G\n");
+		Files.writeString(project.resolve("build.gradle"), """
+			import java.lang.management.ManagementFactory
+			import java.lang.management.MemoryType
+			
+			plugins {
+				id 'fabric-loom'
+				id 'felt-spindle'
+			}
+			
+			dependencies {
+				minecraft 'com.mojang:minecraft:1.20.1'
+				mappings loom.officialMojangMappings()
+			}
+			
+			loom {
+				accessWidenerPath = file('perf.accesswidener')
+			}
+			
+			spindle {
+				accessTransformerPath = file('accesstransformer.cfg')
+			}
+			
+			tasks.named('generateAccessWidenerFromTransformer') {
+				projectMappingsFile = file('fixtures/mappings.tiny')
+				minecraftVersion = '%s'
+				srgUrl = '%s'
+				mojMapClientUrl = '%s'
+				mojMapClientSha1 = '%s'
+				mojMapServerUrl = '%s'
+				mojMapServerSha1 = '%s'
+			}
+			
+			// the daemon is shared between runs, so each run reports its own peak
+			ManagementFactory.memoryPoolMXBeans.each { it.resetPeakUsage() }
+			tasks.register('reportPeakHeap') {
+				mustRunAfter 'generateAccessWidenerFromTransformer', 'updateAccessWidener'
+				doLast {
+					println 'spindle-peak-heap=' + ManagementFactory.memoryPoolMXBeans.findAll { it.type == MemoryType.HEAP }.sum { it.peakUsage.used }
+				}
+			}
+			""".formatted(Fixtures.MC_VERSION, fixtures.resolve("joined.tsrg").toUri(), mojMap, mojMapSha1, mojMap, mojMapSha1));
+		Files.writeString(project.resolve("perf.accesswidener"), "accessWidener v2 named\n# spindle {\n# }\n");
+		Files.write(project.resolve("accesstransformer.cfg"), Fixtures.accessTransformer(AT_LINES));
+	}
+	
+	private void writeOverlays(boolean overlays) throws IOException {
+		final String custom = !overlays ? "{}" : OVERLAYED_CLASSES.stream()
+			.map(className -> '"' + className + "\": [" + Stream.iterate(0, i -> i + 1).limit(OVERLAYS_PER_CLASS)
+				.map(i -> i % 2 == 0
+					? "{\"type\": \"field\", \"signature\": \"felt$field" + i + ":Ljava/lang/Object;\"}"
+					: "{\"type\": \"method\", \"signature\": \"felt$method" + i + "(IJ)V\", \"static\": true}")
+				.collect(Collectors.joining(", ")) + "]")
+			.collect(Collectors.joining(", ", "{\"felt-spindle:overlays\": {", "}}"));
+		
+		final Path fabricModJson = project.resolve("src/main/resources/fabric.mod.json");
+		Files.createDirectories(fabricModJson.getParent());
+		Files.writeString(fabricModJson, """
+			{"schemaVersion": 1, "id": "performance", "version": "1.0.0", "custom": %s}
+			""".formatted(custom));
+	}
+	
+	private static void deleteRecursively(Path dir) throws IOException {
+		if (Files.exists(dir))
+			Fixtures.delete(dir);
+	}
+	
+}
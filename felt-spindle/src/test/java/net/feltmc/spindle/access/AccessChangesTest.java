@@ -0,0 +1,54 @@
+package net.feltmc.spindle.access;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AccessChangesTest {
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	@Test
+	public void readsOnlyTheSpindleBlock() throws IOException {
+		final Path widener = temp.getRoot().toPath().resolve("mod.accesswidener");
+		Files.write(widener, List.of(
+			"accessWidener v2 named",
+			"accessible class net/minecraft/Outside",
+			"# spindle {",
+			"# from: public net.minecraft.world.entity.Entity",
+			"transitive-accessible class net/minecraft/world/entity/Entity",
+			"extendable method net/minecraft/world/entity/Entity tick ()V",
+			"accessible field net/minecraft/world/entity/Entity id I",
+			"mutable field net/minecraft/world/entity/Entity id I",
+			"# }",
+			"accessible class net/minecraft/AlsoOutside"));
+		
+		final AccessChanges changes = AccessChanges.readSpindleBlock(widener);
+		assertEquals(Set.of("net/minecraft/world/entity/Entity"), changes.classes().keySet());
+		
+		final AccessChanges.ClassChanges entity = changes.classes().get("net/minecraft/world/entity/Entity");
+		assertEquals(EnumSet.of(AccessWidenerModel.Access.ACCESSIBLE), entity.access());
+		assertEquals(EnumSet.of(AccessWidenerModel.Access.EXTENDABLE), entity.method("tick", "()V"));
+		assertEquals(EnumSet.of(AccessWidenerModel.Access.ACCESSIBLE, AccessWidenerModel.Access.MUTABLE), entity.field("id", "I"));
+		assertTrue(entity.method("id", "I").isEmpty());
+		
+		// neither order nor transitivity matter to the jar
+		assertEquals(changes, AccessChanges.parse(List.of(
+			"mutable field net/minecraft/world/entity/Entity id I",
+			"accessible field net/minecraft/world/entity/Entity id I",
+			"accessible class net/minecraft/world/entity/Entity",
+			"extendable method net/minecraft/world/entity/Entity tick ()V")));
+		assertNull(AccessChanges.readSpindleBlock(Files.write(temp.newFile().toPath(), List.of("accessWidener v2 named"))));
+	}
+	
+}
@@ -0,0 +1,40 @@
+package net.feltmc.spindle.access;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+public class AccessTransformerConverterTest {
+	
+	@Test
+	public void convertsClassEntriesWithoutLoadingMappings() throws IOException {
+		final AccessTransformerConverter converter = new AccessTransformerConverter(() -> {
+			throw new AssertionError("mappings loaded for a class entry");
+		});
+		
+		assertEquals("public-f net.minecraft.world.level.Level", AccessTransformerConverter.content("  public-f net.minecraft.world.level.Level # needed for tests"));
+		assertEquals(List.of("transitive-extendable class net/minecraft/world/level/Level"), converter.convert("public-f net.minecraft.world.level.Level"));
+		assertEquals(List.of("transitive-accessible class net/minecraft/world/level/Level"), converter.convert("protected net.minecraft.world.level.Level"));
+		assertEquals(List.of(), converter.convert("private net.minecraft.world.level.Level"));
+	}
+	
+	@Test
+	public void convertsInParallelInOrder() throws IOException {
+		final AccessTransformerConverter converter = new AccessTransformerConverter(() -> {
+			throw new AssertionError("mappings loaded for a class entry");
+		});
+		
+		final List<String> contents = IntStream.range(0, 1000).mapToObj(i -> "public net.minecraft.Class" + i).toList();
+		final List<List<String>> expected = new ArrayList<>();
+		for (String content : contents)
+			expected.add(converter.convert(content));
+		
+		assertEquals(expected, converter.convertAll(contents));
+	}
+	
+}
@@ -0,0 +1,133 @@
+package net.feltmc.spindle.access;
+
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class AccessWidenerModelTest {
+	
+	private static String write(AccessWidenerModel model) throws IOException {
+		final StringWriter out = new StringWriter();
+		try (BufferedWriter writer = new BufferedWriter(out)) {
+			model.write(writer);
+		}
+		
+		return out.toString().replace(System.lineSeparator(), "\n");
+	}
+	
+	@Test
+	public void collapsesDuplicateAndSubsumedEntriesInOrder() throws IOException {
+		final AccessWidenerModel model = new AccessWidenerModel();
+		model.add(List.of(
+			"transitive-accessible method b/Level tick ()V",
+			"transitive-extendable method b/Level tick ()V"), List.of("# public-f b.Level m_1_()V"));
+		model.add(List.of("transitive-accessible field a/Entity id I"), List.of("# comment", "# public a.Entity f_1_"));
+		model.add(List.of("transitive-accessible class b/Level"), List.of("# public b.Level"));
+		model.add(List.of("transitive-extendable class b/Level"), List.of("# public-f b.Level"));
+		model.add(List.of(
+			"accessible field a/Entity id I",
+			"transitive-mutable field a/Entity id I"), List.of("# public-f a.Entity f_1_"));
+		model.add(List.of("transitive-accessible method b/Level tick ()V"), List.of("# public b.Level m_1_()V"));
+		
+		assertEquals("""
+			# comment
+			# public a.Entity f_1_
+			# public-f a.Entity f_1_
+			transitive-accessible field a/Entity id I
+			transitive-mutable field a/Entity id I
+			# public b.Level
+			# public-f b.Level
+			transitive-extendable class b/Level
+			# public-f b.Level m_1_()V
+			# public b.Level m_1_()V
+			transitive-accessible method b/Level tick ()V
+			transitive-extendable method b/Level tick ()V
+			""", write(model));
+	}
+	
+	@Test
+	public void keepsTransitiveAccessNextToPlainExtendable() throws IOException {
+		final AccessWidenerModel model = new AccessWidenerModel();
+		model.add(List.of("extendable class a/Entity", "transitive-accessible class a/Entity"), List.of());
+		
+		assertEquals("""
+			transitive-accessible class a/Entity
+			extendable class a/Entity
+			""", write(model));
+	}
+	
+	@Test
+	public void writesTheSameEntriesEveryTime() throws IOException {
+		final AccessWidenerModel model = new AccessWidenerModel();
+		model.add(List.of("accessible class a/Entity", "extendable class a/Entity"), List.of());
+		model.add(List.of("transitive-accessible class b/Level", "extendable class b/Level"), List.of());
+		
+		final String expected = """
+			extendable class a/Entity
+			transitive-accessible class b/Level
+			extendable class b/Level
+			""";
+		assertEquals(expected, write(model));
+		assertEquals(expected, write(model));
+	}
+	
+	@Test
+	public void keepsHeaderCommentsAheadOfTheSortedEntries() throws IOException {
+		final AccessWidenerModel model = new AccessWidenerModel();
+		model.addHeader(List.of("# Generated for example-mod"));
+		model.add(List.of("accessible class b/Level"), List.of("# public b.Level"));
+		model.addHeader(List.of("# Entities"));
+		model.add(List.of("accessible class a/Entity"), List.of("# public a.Entity"));
+		
+		assertEquals("""
+			# Generated for example-mod
+			# Entities
+			# public a.Entity
+			accessible class a/Entity
+			# public b.Level
+			accessible class b/Level
+			""", write(model));
+	}
+	
+	@Test
+	public void keepsTheCommentsOfEntriesWithoutLines() throws IOException {
+		final AccessWidenerModel model = new AccessWidenerModel();
+		model.add(List.of(), List.of("# private b.Level"));
+		model.add(List.of("accessible class a/Entity"), List.of("# public a.Entity"));
+		
+		assertEquals("""
+			# public a.Entity
+			accessible class a/Entity
+			# private b.Level
+			""", write(model));
+	}
+	
+	@Test
+	public void keepsTrailingCommentsLast() throws IOException {
+		final AccessWidenerModel model = new AccessWidenerModel();
+		model.add(List.of("accessible class b/Level"), List.of("# public b.Level"));
+		model.add(List.of(), List.of("# private a.Entity"));
+		model.addTrailer(List.of("# end of file"));
+		
+		assertEquals("""
+			# public b.Level
+			accessible class b/Level
+			# private a.Entity
+			# end of file
+			""", write(model));
+	}
+	
+	@Test
+	public void rejectsMemberEntriesWithoutNameOrDescriptor() {
+		final AccessWidenerModel model = new AccessWidenerModel();
+		assertThrows(IllegalArgumentException.class, () -> model.add(List.of("accessible field a/Entity"), List.of()));
+		assertThrows(IllegalArgumentException.class, () -> model.add(List.of("accessible method a/Entity tick"), List.of()));
+	}
+	
+}
@@ -0,0 +1,73 @@
+package net.feltmc.spindle.access;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ResolutionCacheTest {
+	
+	private static final String FIELD = "public-f net.minecraft.world.entity.Entity f_19804_";
+	private static final String METHOD = "public net.minecraft.world.entity.Entity m_20011_(Lnet/minecraft/world/entity/Entity;)V";
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	@Test
+	public void keepsEntriesForTheSameKey() throws IOException {
+		final Path file = temp.getRoot().toPath().resolve("cache/at-resolution.bin");
+		
+		final ResolutionCache first = ResolutionCache.load(file, "key");
+		assertNull(first.get(FIELD));
+		first.put(FIELD, List.of("transitive-mutable field net/minecraft/world/entity/Entity id I"));
+		first.put(METHOD, List.of());
+		first.save();
+		
+		final ResolutionCache second = ResolutionCache.load(file, "key");
+		assertEquals(List.of("transitive-mutable field net/minecraft/world/entity/Entity id I"), second.get(FIELD));
+		assertEquals(List.of(), second.get(METHOD));
+		
+		assertNull(ResolutionCache.load(file, "other").get(FIELD));
+	}
+	
+	@Test
+	public void dropsUnusedEntriesAndSkipsUnchangedWrites() throws IOException {
+		final Path file = temp.getRoot().toPath().resolve("at-resolution.bin");
+		
+		final ResolutionCache first = ResolutionCache.load(file, "key");
+		first.put(FIELD, List.of("a"));
+		first.put(METHOD, List.of("b"));
+		first.save();
+		
+		final FileTime written = FileTime.fromMillis(0);
+		Files.setLastModifiedTime(file, written);
+		final ResolutionCache unchanged = ResolutionCache.load(file, "key");
+		unchanged.get(FIELD);
+		unchanged.get(METHOD);
+		unchanged.save();
+		assertEquals(written, Files.getLastModifiedTime(file));
+		
+		final ResolutionCache pruned = ResolutionCache.load(file, "key");
+		pruned.get(METHOD);
+		pruned.save();
+		final ResolutionCache reloaded = ResolutionCache.load(file, "key");
+		assertNull(reloaded.get(FIELD));
+		assertEquals(List.of("b"), reloaded.get(METHOD));
+	}
+	
+	@Test
+	public void ignoresCorruptFiles() throws IOException {
+		final Path file = temp.newFile().toPath();
+		Files.write(file, new byte[] { 0x53, 0x50, 0x41 });
+		
+		assertNull(ResolutionCache.load(file, "key").get(FIELD));
+	}
+	
+}
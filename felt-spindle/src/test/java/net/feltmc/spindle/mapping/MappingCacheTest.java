@@ -0,0 +1,93 @@
+package net.feltmc.spindle.mapping;
+
+import net.feltmc.spindle.util.Checksum;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+
+public class MappingCacheTest {
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	private Path upstream(String content) throws IOException {
+		final Path file = temp.newFile().toPath();
+		Files.writeString(file, content);
+		return file;
+	}
+	
+	@Test
+	public void downloadsOnceAndServesFromCache() throws IOException {
+		final Path upstream = upstream("a -> b:\n");
+		final MappingCache cache = new MappingCache(temp.newFolder("cache").toPath(), false);
+		
+		final Path cached = cache.resolve("1.20.1", "joined.tsrg", upstream.toUri().toString(), null);
+		assertEquals("a -> b:\n", Files.readString(cached));
+		
+		// the upstream disappearing must not matter once the cache is warm
+		Files.delete(upstream);
+		assertEquals(cached, cache.resolve("1.20.1", "joined.tsrg", upstream.toUri().toString(), null));
+	}
+	
+	@Test
+	public void unhashedDownloadsAreKeptPerUrl() throws IOException {
+		final Path oldUpstream = upstream("old");
+		final Path newUpstream = upstream("new");
+		final MappingCache cache = new MappingCache(temp.newFolder("cache").toPath(), false);
+		
+		final Path old = cache.resolve("1.20.1", "joined.tsrg", oldUpstream.toUri().toString(), null);
+		final Path moved = cache.resolve("1.20.1", "joined.tsrg", newUpstream.toUri().toString(), null);
+		assertNotEquals(old, moved);
+		assertEquals("new", Files.readString(moved));
+		assertEquals("old", Files.readString(cache.resolve("1.20.1", "joined.tsrg", oldUpstream.toUri().toString(), null)));
+	}
+	
+	@Test
+	public void offlineUsesWarmCache() throws IOException {
+		final Path upstream = upstream("client");
+		final String sha1 = Checksum.sha1(upstream);
+		final Path root = temp.newFolder("cache").toPath();
+		
+		final Path cached = new MappingCache(root, false).resolve("1.20.1", "client_mappings.txt", upstream.toUri().toString(), sha1);
+		Files.delete(upstream);
+		
+		assertEquals(cached, new MappingCache(root, true).resolve("1.20.1", "client_mappings.txt", upstream.toUri().toString(), sha1));
+	}
+	
+	@Test
+	public void offlineFailsOnColdCache() throws IOException {
+		final Path upstream = upstream("client");
+		final MappingCache cache = new MappingCache(temp.newFolder("cache").toPath(), true);
+		
+		assertThrows(IOException.class, () -> cache.resolve("1.20.1", "client_mappings.txt", upstream.toUri().toString(), null));
+	}
+	
+	@Test
+	public void corruptEntryIsRefetched() throws IOException {
+		final Path upstream = upstream("server");
+		final String sha1 = Checksum.sha1(upstream);
+		final MappingCache cache = new MappingCache(temp.newFolder("cache").toPath(), false);
+		
+		final Path cached = cache.resolve("1.20.1", "server_mappings.txt", upstream.toUri().toString(), sha1);
+		Files.writeString(cached, "garbage");
+		
+		assertEquals("server", Files.readString(cache.resolve("1.20.1", "server_mappings.txt", upstream.toUri().toString(), sha1)));
+	}
+	
+	@Test
+	public void mismatchedDownloadIsRejected() throws IOException {
+		final Path upstream = upstream("server");
+		final MappingCache cache = new MappingCache(temp.newFolder("cache").toPath(), false);
+		
+		assertThrows(IOException.class, () -> cache.resolve("1.20.1", "server_mappings.txt", upstream.toUri().toString(), "0000000000000000000000000000000000000000"));
+	}
+	
+}
@@ -0,0 +1,132 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.*;
+
+public class MappingSnapshotTest {
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	static MemoryMappingTree sampleTree() throws IOException {
+		final MemoryMappingTree tree = new MemoryMappingTree();
+		tree.visitHeader();
+		tree.visitNamespaces("obf", List.of("srg", "merged"));
+		tree.visitContent();
+		
+		tree.visitClass("a");
+		tree.visitDstName(MappedElementKind.CLASS, 0, "net/minecraft/world/entity/Entity");
+		tree.visitDstName(MappedElementKind.CLASS, 1, "net/minecraft/world/entity/Entity");
+		tree.visitField("b", "I");
+		tree.visitDstName(MappedElementKind.FIELD, 0, "f_19804_");
+		tree.visitDstName(MappedElementKind.FIELD, 1, "id");
+		tree.visitMethod("c", "(La;)V");
+		tree.visitDstName(MappedElementKind.METHOD, 0, "m_20011_");
+		tree.visitDstName(MappedElementKind.METHOD, 1, "startRiding");
+		
+		tree.visitClass("d");
+		tree.visitDstName(MappedElementKind.CLASS, 0, "net/minecraft/client/Minecraft");
+		tree.visitDstName(MappedElementKind.CLASS, 1, "net/minecraft/client/Minecraft");
+		tree.visitField("e", "La;");
+		tree.visitDstName(MappedElementKind.FIELD, 0, "f_91074_");
+		tree.visitDstName(MappedElementKind.FIELD, 1, "cameraEntity");
+		
+		tree.visitEnd();
+		return tree;
+	}
+	
+	@Test
+	public void roundTripsNamesAndDescriptors() throws IOException {
+		final Path file = temp.getRoot().toPath().resolve("merged.bin");
+		MappingSnapshot.write(sampleTree(), file);
+		
+		final MappingSnapshot snapshot = MappingSnapshot.open(file);
+		assertNotNull(snapshot);
+		assertEquals("obf", snapshot.getSrcNamespace());
+		assertEquals(List.of("srg", "merged"), snapshot.getDstNamespaces());
+		assertEquals(2, snapshot.getClasses().size());
+		
+		final int merged = snapshot.getNamespaceId("merged");
+		final MappingTreeView.ClassMappingView minecraft = snapshot.getClass("net/minecraft/client/Minecraft", merged);
+		assertEquals("d", minecraft.getSrcName());
+		
+		final MappingTreeView.FieldMappingView camera = minecraft.getField("f_91074_", null, snapshot.getNamespaceId("srg"));
+		assertEquals("cameraEntity", camera.getName(merged));
+		assertEquals("Lnet/minecraft/world/entity/Entity;", camera.getDesc(merged));
+		
+		final MappingTreeView.MethodMappingView startRiding = snapshot.getClass("a").getMethod("c", "(La;)V");
+		assertEquals("startRiding", startRiding.getName(merged));
+		assertEquals("(Lnet/minecraft/world/entity/Entity;)V", startRiding.getDesc(merged));
+		
+		assertNull(snapshot.getClass("net/minecraft/Missing", merged));
+		assertNull(snapshot.getClass("a", snapshot.getNamespaceId("missing")));
+	}
+	
+	@Test
+	public void indexesEveryNamespaceForConcurrentReaders() throws IOException {
+		final MemoryMappingTree tree = new MemoryMappingTree();
+		tree.visitHeader();
+		tree.visitNamespaces("obf", List.of("srg", "merged"));
+		tree.visitContent();
+		for (int i = 0; i < 5000; i++) {
+			tree.visitClass("c" + i);
+			tree.visitDstName(MappedElementKind.CLASS, 0, "net/minecraft/C" + i);
+			if (i % 3 != 0) // not every class has a name in every namespace
+				tree.visitDstName(MappedElementKind.CLASS, 1, "net/minecraft/Cl\u00e2ss" + i);
+		}
+		tree.visitEnd();
+		
+		final Path file = temp.getRoot().toPath().resolve("merged.bin");
+		MappingSnapshot.write(tree, file);
+		final MappingSnapshot snapshot = MappingSnapshot.open(file);
+		assertNotNull(snapshot);
+		
+		final int srg = snapshot.getNamespaceId("srg");
+		final int merged = snapshot.getNamespaceId("merged");
+		IntStream.range(0, 5000).parallel().forEach(i -> {
+			assertEquals("c" + i, snapshot.getClass("c" + i).getSrcName());
+			assertEquals("c" + i, snapshot.getClass("net/minecraft/C" + i, srg).getSrcName());
+			
+			final MappingTreeView.ClassMappingView byMerged = snapshot.getClass("net/minecraft/Cl\u00e2ss" + i, merged);
+			if (i % 3 != 0)
+				assertEquals("c" + i, byMerged.getSrcName());
+			else
+				assertNull(byMerged);
+		});
+	}
+	
+	@Test
+	public void visitsIntoEquivalentTree() throws IOException {
+		final Path file = temp.getRoot().toPath().resolve("merged.bin");
+		MappingSnapshot.write(sampleTree(), file);
+		
+		final MemoryMappingTree copy = new MemoryMappingTree();
+		//noinspection ConstantConditions
+		MappingSnapshot.open(file).accept(copy);
+		
+		assertEquals("id", copy.getField("a", "b", "I").getName("merged"));
+		assertEquals("m_20011_", copy.getMethod("a", "c", "(La;)V").getName("srg"));
+	}
+	
+	@Test
+	public void rejectsForeignFiles() throws IOException {
+		final Path file = temp.newFile().toPath();
+		Files.writeString(file, "definitely not a snapshot file");
+		
+		assertNull(MappingSnapshot.open(file));
+		assertNull(MappingSnapshot.open(temp.getRoot().toPath().resolve("missing.bin")));
+	}
+	
+}
@@ -0,0 +1,75 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.feltmc.spindle.util.Checksum;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertThrows;
+
+public class MappingsTest {
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	private static Path resource(String name) throws URISyntaxException {
+		//noinspection ConstantConditions
+		return Path.of(MappingsTest.class.getResource("/mappings/" + name).toURI());
+	}
+	
+	private static Mappings.Sources sources(String projectMappings) throws URISyntaxException, IOException {
+		return new Mappings.Sources(resource(projectMappings).toFile(), "1.20.1",
+			new Mappings.Download(resource("joined.tsrg").toUri().toString(), null),
+			new Mappings.Download(resource("client.txt").toUri().toString(), Checksum.sha1(resource("client.txt"))),
+			new Mappings.Download(resource("server.txt").toUri().toString(), Checksum.sha1(resource("server.txt"))));
+	}
+	
+	@Test
+	public void mergesAllSourcesAndReloadsOffline() throws Exception {
+		final Mappings.Sources sources = sources("mappings.tiny");
+		
+		for (boolean offline : new boolean[] { false, true }) {
+			final Mappings mappings = new Mappings(sources, new MappingCache(temp.getRoot().toPath(), offline));
+			
+			final MappingTreeView.ClassMappingView entity = mappings.findClass("net/minecraft/world/entity/Entity", Mappings.Namespace.MERGED);
+			assertEquals("a", entity.getSrcName());
+			assertEquals("net/minecraft/class_1297", entity.getName(mappings.getNamespaceId(Mappings.Namespace.INTERMEDIARY)));
+			assertEquals("id", mappings.findField(entity, "f_19804_", Mappings.Namespace.SRG).getName(Mappings.Namespace.MERGED.name));
+			
+			final String srgDesc = mappings.mapSignature("(Lnet/minecraft/world/entity/Entity;)V", Mappings.Namespace.MERGED, Mappings.Namespace.SRG);
+			assertEquals("startRiding", mappings.findMethod(entity, "m_20011_", srgDesc, Mappings.Namespace.SRG).getName(Mappings.Namespace.MERGED.name));
+			
+			final MappingTreeView.ClassMappingView minecraft = mappings.findClass("d", Mappings.Namespace.OBF);
+			assertEquals("Lnet/minecraft/world/entity/Entity;", mappings.findField(minecraft, "cameraEntity", Mappings.Namespace.MERGED).getDesc(Mappings.Namespace.MERGED.name));
+		}
+	}
+	
+	@Test
+	public void prunesNamespacesItWasNotAskedFor() throws Exception {
+		final Mappings mappings = new Mappings(sources("mappings.tiny"), new MappingCache(temp.getRoot().toPath(), false), Mappings.Pruning.ACCESS_TRANSFORMER);
+		
+		assertEquals(List.of("srg", "merged"), mappings.tree.getDstNamespaces());
+		// the merged names are still picked from the pruned namespaces
+		final MappingTreeView.ClassMappingView entity = mappings.findClass("net/minecraft/world/entity/Entity", Mappings.Namespace.MERGED);
+		assertEquals("id", mappings.findField(entity, "f_19804_", Mappings.Namespace.SRG).getName(Mappings.Namespace.MERGED.name));
+		assertThrows(IllegalArgumentException.class, () -> mappings.findClass("net/minecraft/class_1297", Mappings.Namespace.INTERMEDIARY));
+		
+		// and the unpruned mappings are cached separately
+		assertEquals(5, new Mappings(sources("mappings.tiny"), new MappingCache(temp.getRoot().toPath(), true)).tree.getDstNamespaces().size());
+	}
+	
+	@Test
+	public void keyFollowsTheSources() throws Exception {
+		assertEquals(sources("mappings.tiny").key(), sources("mappings.tiny").key());
+		assertNotEquals(sources("mappings.tiny").key(), sources("client.txt").key());
+	}
+	
+}
@@ -0,0 +1,43 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.MappedElementKind;
+import net.fabricmc.mappingio.tree.MappingTreeView;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MemberIndexTest {
+	
+	@Test
+	public void resolvesOverloadsByDescriptorInTheIndexedNamespace() throws IOException {
+		final MemoryMappingTree tree = new MemoryMappingTree();
+		tree.visitHeader();
+		tree.visitNamespaces("obf", List.of("merged"));
+		tree.visitContent();
+		tree.visitClass("a");
+		tree.visitDstName(MappedElementKind.CLASS, 0, "net/minecraft/world/entity/Entity");
+		tree.visitMethod("b", "(I)V");
+		tree.visitDstName(MappedElementKind.METHOD, 0, "move");
+		tree.visitMethod("c", "(La;)V");
+		tree.visitDstName(MappedElementKind.METHOD, 0, "move");
+		tree.visitMethod("d", "()V");
+		tree.visitDstName(MappedElementKind.METHOD, 0, "tick");
+		tree.visitEnd();
+		
+		final MappingTreeView.ClassMappingView entity = tree.getClass("a");
+		final MemberIndex<MappingTreeView.MethodMappingView> index = MemberIndex.build(entity.getMethods(), tree.getNamespaceId("merged"));
+		
+		assertEquals("b", index.get("move").getSrcName());
+		assertEquals("b", index.get("move", "(I)V").getSrcName());
+		assertEquals("c", index.get("move", "(Lnet/minecraft/world/entity/Entity;)V").getSrcName());
+		assertEquals("d", index.get("tick", null).getSrcName());
+		assertNull(index.get("move", "(J)V"));
+		assertNull(index.get("b"));
+	}
+	
+}
@@ -0,0 +1,70 @@
+package net.feltmc.spindle.mapping;
+
+import net.fabricmc.mappingio.MappingVisitor;
+import net.fabricmc.mappingio.adapter.MappingSourceNsSwitch;
+import net.fabricmc.mappingio.format.ProGuardReader;
+import net.fabricmc.mappingio.format.Tiny2Reader;
+import net.fabricmc.mappingio.format.Tiny2Writer;
+import net.fabricmc.mappingio.format.TsrgReader;
+import net.fabricmc.mappingio.tree.MappingTree;
+import net.fabricmc.mappingio.tree.MemoryMappingTree;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class MergingMappingVisitorTest {
+	
+	private static final List<String> DST_NAMESPACES = List.of("srg", "mojmap", "intermediary", "named");
+	private static final List<String> PRIORITY = List.of("named", "mojmap", "intermediary");
+	
+	private interface Read {
+		void read(Reader reader, MappingVisitor visitor) throws IOException;
+	}
+	
+	private static final List<String> FILES = List.of("mappings.tiny", "joined.tsrg", "client.txt", "server.txt");
+	private static final List<Read> READERS = List.of(
+		Tiny2Reader::read,
+		TsrgReader::read,
+		(reader, visitor) -> ProGuardReader.read(reader, "mojmap", "obf", new MappingSourceNsSwitch(visitor, "obf")),
+		(reader, visitor) -> ProGuardReader.read(reader, "mojmap", "obf", new MappingSourceNsSwitch(visitor, "obf")));
+	
+	private static Reader open(String name) {
+		//noinspection ConstantConditions
+		return new InputStreamReader(MergingMappingVisitorTest.class.getResourceAsStream("/mappings/" + name), StandardCharsets.UTF_8);
+	}
+	
+	private static String write(MappingTree tree) throws IOException {
+		final StringWriter out = new StringWriter();
+		tree.accept(new Tiny2Writer(out, false));
+		return out.toString();
+	}
+	
+	@Test
+	public void streamingMergeMatchesTreeMerge() throws IOException {
+		final MergingMappingVisitor.MergeTarget treeMerge = MergingMappingVisitor.begin("obf", List.of("srg", "mojmap", "intermediary", "named", "merged"));
+		final MergingMappingVisitor.StreamingMerge streamingMerge = MergingMappingVisitor.stream("obf", DST_NAMESPACES, "merged", PRIORITY);
+		
+		for (int i = 0; i < FILES.size(); i++) {
+			final MemoryMappingTree source = new MemoryMappingTree();
+			try (Reader reader = open(FILES.get(i))) {
+				READERS.get(i).read(reader, source);
+			}
+			treeMerge.add(source);
+			
+			try (Reader reader = open(FILES.get(i))) {
+				READERS.get(i).read(reader, streamingMerge);
+			}
+		}
+		
+		final String expected = write(treeMerge.finish("merged", PRIORITY));
+		assertEquals(expected, write(streamingMerge.finish()));
+	}
+	
+}
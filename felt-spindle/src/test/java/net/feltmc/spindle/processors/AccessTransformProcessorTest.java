@@ -0,0 +1,86 @@
+package net.feltmc.spindle.processors;
+
+import net.feltmc.spindle.access.AccessChanges;
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.tree.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AccessTransformProcessorTest {
+	
+	private static final Map<String, AccessChanges.ClassChanges> CHANGES = AccessChanges.parse(List.of(
+		"extendable class net/minecraft/Entity",
+		"accessible field net/minecraft/Entity id I",
+		"mutable field net/minecraft/Entity id I",
+		"extendable method net/minecraft/Entity tick ()V",
+		"accessible method net/minecraft/Entity helper ()V",
+		"accessible class net/minecraft/Entity$Inner")).classes();
+	
+	private static byte[] entityClass() {
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V17, Opcodes.ACC_FINAL, "net/minecraft/Entity", null, "java/lang/Object", null);
+		writer.visitInnerClass("net/minecraft/Entity$Inner", "net/minecraft/Entity", "Inner", Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC);
+		writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "id", "I", null, null).visitEnd();
+		writer.visitField(Opcodes.ACC_PRIVATE, "untouched", "I", null, null).visitEnd();
+		
+		for (String name : List.of("tick", "helper", "run")) {
+			final MethodVisitor method = writer.visitMethod(Opcodes.ACC_PRIVATE, name, "()V", null, null);
+			method.visitCode();
+			if (name.equals("run")) {
+				method.visitVarInsn(Opcodes.ALOAD, 0);
+				method.visitMethodInsn(Opcodes.INVOKESPECIAL, "net/minecraft/Entity", "tick", "()V", false);
+			}
+			method.visitInsn(Opcodes.RETURN);
+			method.visitMaxs(0, 0);
+			method.visitEnd();
+		}
+		
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+	
+	private static ClassNode read(byte[] bytes) {
+		final ClassNode node = new ClassNode();
+		new ClassReader(bytes).accept(node, 0);
+		return node;
+	}
+	
+	private static MethodNode method(ClassNode node, String name) {
+		return node.methods.stream().filter(m -> m.name.equals(name)).findFirst().orElseThrow();
+	}
+	
+	@Test
+	public void widensAccessFlags() {
+		final ClassNode node = read(SpindleJarProcessor.transform(entityClass(), List.of(), CHANGES));
+		
+		assertEquals(Opcodes.ACC_PUBLIC, node.access);
+		assertEquals(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, node.innerClasses.get(0).access);
+		assertEquals(Opcodes.ACC_PUBLIC, node.fields.get(0).access);
+		assertEquals(Opcodes.ACC_PRIVATE, node.fields.get(1).access);
+		assertEquals(Opcodes.ACC_PROTECTED, method(node, "tick").access);
+		assertEquals(Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL, method(node, "helper").access);
+		assertEquals(Opcodes.ACC_PRIVATE, method(node, "run").access);
+		
+		// the widened method can be overridden now, so it's called virtually
+		final MethodInsnNode call = (MethodInsnNode) method(node, "run").instructions.getFirst().getNext();
+		assertEquals(Opcodes.INVOKEVIRTUAL, call.getOpcode());
+	}
+	
+	@Test
+	public void transformsOuterClassesOfChangedNestedClasses() {
+		assertEquals(Set.of("net/minecraft/Entity.class", "net/minecraft/Entity$Inner.class"),
+			AccessTransformProcessor.getEntryNames(CHANGES));
+		
+		final byte[] untouched = entityClass();
+		assertArrayEquals(untouched, SpindleJarProcessor.transform(untouched, List.of(), Map.of()));
+	}
+	
+}
@@ -0,0 +1,130 @@
+package net.feltmc.spindle.processors;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.*;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class ClassOverlayProcessorTest {
+	
+	private static final List<ClassOverlayProcessor.OverlayedClass> OVERLAYS = List.of(
+		new ClassOverlayProcessor.OverlayedClass("first", "net/minecraft/world/entity/Entity", List.of(
+			new ClassOverlayProcessor.FieldOverlay("felt$level", Type.getType("Lnet/minecraft/world/level/Level;"), Opcodes.ACC_PUBLIC),
+			new ClassOverlayProcessor.MethodOverlay("felt$tick", Type.getMethodType("(JD[I)Z"), Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC))),
+		new ClassOverlayProcessor.OverlayedClass("second", "net/minecraft/world/entity/Entity", List.of(
+			new ClassOverlayProcessor.MethodOverlay("felt$move", Type.getMethodType("(Lnet/minecraft/world/entity/Entity;J)V"), Opcodes.ACC_PROTECTED))));
+	
+	private static byte[] entityClass() {
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, "net/minecraft/world/entity/Entity", null, "java/lang/Object", null);
+		writer.visitField(Opcodes.ACC_PRIVATE, "id", "I", null, null).visitEnd();
+		
+		final MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		init.visitCode();
+		init.visitVarInsn(Opcodes.ALOAD, 0);
+		init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		init.visitInsn(Opcodes.RETURN);
+		init.visitMaxs(0, 0);
+		init.visitEnd();
+		
+		final MethodVisitor getId = writer.visitMethod(Opcodes.ACC_PUBLIC, "getId", "()I", null, null);
+		getId.visitCode();
+		getId.visitVarInsn(Opcodes.ALOAD, 0);
+		getId.visitFieldInsn(Opcodes.GETFIELD, "net/minecraft/world/entity/Entity", "id", "I");
+		getId.visitInsn(Opcodes.IRETURN);
+		getId.visitMaxs(0, 0);
+		getId.visitEnd();
+		
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+	
+	// the tree based transform this processor used to do, kept as the reference output
+	private static byte[] treeTransform(byte[] input) {
+		final ClassNode node = new ClassNode();
+		new ClassReader(input).accept(node, 0);
+		
+		for (ClassOverlayProcessor.OverlayedClass overlayedClass : OVERLAYS) {
+			for (ClassOverlayProcessor.Overlay overlay : overlayedClass.overlays()) {
+				if (overlay instanceof ClassOverlayProcessor.FieldOverlay fOverlay) {
+					node.fields.add(new FieldNode(fOverlay.accessFlag(), fOverlay.name(), fOverlay.descriptor().getDescriptor(), null, null));
+				} else if (overlay instanceof ClassOverlayProcessor.MethodOverlay mOverlay) {
+					final MethodNode mNode = new MethodNode(Opcodes.ASM9);
+					mNode.name = mOverlay.name();
+					mNode.desc = mOverlay.methodType().getDescriptor();
+					mNode.access = mOverlay.accessFlag();
+					mNode.maxStack = 2;
+					final int argsAndReturnSize = mOverlay.methodType().getArgumentsAndReturnSizes();
+					mNode.maxLocals = (argsAndReturnSize >> 2) + (argsAndReturnSize & 0x3);
+					mNode.instructions.add(new TypeInsnNode(Opcodes.NEW, "java/lang/AssertionError"));
+					mNode.instructions.add(new InsnNode(Opcodes.DUP));
+					mNode.instructions.add(new MethodInsnNode(Opcodes.INVOKESPECIAL, "java/lang/AssertionError", "<init>", "()V"));
+					mNode.instructions.add(new InsnNode(Opcodes.ATHROW));
+					node.methods.add(mNode);
+				}
+			}
+		}
+		
+		final ClassWriter writer = new ClassWriter(0);
+		node.accept(writer);
+		return writer.toByteArray();
+	}
+	
+	private static String trace(byte[] bytes) {
+		final StringWriter out = new StringWriter();
+		new ClassReader(bytes).accept(new TraceClassVisitor(new PrintWriter(out)), 0);
+		return out.toString();
+	}
+	
+	@Test
+	public void streamingTransformMatchesTreeTransform() {
+		final byte[] input = entityClass();
+		final byte[] streamed = SpindleJarProcessor.transform(input, OVERLAYS, Map.of());
+		
+		assertEquals(trace(treeTransform(input)), trace(streamed));
+		// and the class still round trips through a plain reader and writer unchanged
+		final ClassWriter copy = new ClassWriter(0);
+		new ClassReader(streamed).accept(copy, 0);
+		assertEquals(trace(streamed), trace(copy.toByteArray()));
+	}
+	
+	@Test
+	public void keepsUntouchedMethodsVerbatim() {
+		final byte[] input = entityClass();
+		final byte[] streamed = SpindleJarProcessor.transform(input, List.of(), Map.of());
+		
+		// without overlays the writer reuses the reader's constant pool and code, so nothing changes at all
+		assertEquals(trace(input), trace(streamed));
+		assertArrayEquals(input, streamed);
+	}
+	
+	@Test
+	public void specIgnoresModOrder() {
+		final ClassOverlayProcessor.OverlayedClass other = new ClassOverlayProcessor.OverlayedClass("first", "net/minecraft/world/level/Level", List.of(
+			new ClassOverlayProcessor.FieldOverlay("felt$time", Type.LONG_TYPE, Opcodes.ACC_PRIVATE)));
+		final ClassOverlayProcessor.Spec spec = new ClassOverlayProcessor.Spec(List.of(OVERLAYS.get(0), other, OVERLAYS.get(1)));
+		final ClassOverlayProcessor.Spec reordered = new ClassOverlayProcessor.Spec(List.of(OVERLAYS.get(1), OVERLAYS.get(0), other));
+		
+		assertEquals(spec, reordered);
+		assertEquals(spec.hashCode(), reordered.hashCode());
+		assertEquals(spec.overlayedClasses(), reordered.overlayedClasses());
+		
+		final ClassOverlayProcessor.Spec changed = new ClassOverlayProcessor.Spec(List.of(OVERLAYS.get(0), OVERLAYS.get(1), new ClassOverlayProcessor.OverlayedClass("first", "net/minecraft/world/level/Level", List.of(
+			new ClassOverlayProcessor.FieldOverlay("felt$time", Type.LONG_TYPE, Opcodes.ACC_PUBLIC)))));
+		assertNotEquals(spec.fingerprint(), changed.fingerprint());
+	}
+	
+}
@@ -0,0 +1,137 @@
+package net.feltmc.spindle.processors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class JarTransformerTest {
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	static Path createJar(Path jar, int entries) throws IOException {
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+			out.setLevel(Deflater.BEST_SPEED); // not the default level, so recompressed entries would differ
+			for (int i = 0; i < entries; i++) {
+				final byte[] data = ("entry " + i + " ").repeat(50 + i).getBytes(StandardCharsets.UTF_8);
+				final ZipEntry entry = new ZipEntry("net/minecraft/C" + i + ".class");
+				entry.setTime(946684800000L + i * 60_000L);
+				
+				if (i % 4 == 0) {
+					final CRC32 crc = new CRC32();
+					crc.update(data);
+					entry.setMethod(ZipEntry.STORED);
+					entry.setSize(data.length);
+					entry.setCompressedSize(data.length);
+					entry.setCrc(crc.getValue());
+				}
+				
+				out.putNextEntry(entry);
+				out.write(data);
+				out.closeEntry();
+			}
+		}
+		
+		return jar;
+	}
+	
+	private static List<String> names(Path jar) throws IOException {
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			return Collections.list(zip.entries()).stream().map(ZipEntry::getName).toList();
+		}
+	}
+	
+	@Test
+	public void transformsInParallelAndKeepsLayout() throws IOException {
+		final Path jar = createJar(temp.getRoot().toPath().resolve("minecraft.jar"), 64);
+		final List<String> before = names(jar);
+		
+		final int transformed = JarTransformer.transform(jar, Map.of(
+			"net/minecraft/C0.class", input -> "stored".getBytes(StandardCharsets.UTF_8),
+			"net/minecraft/C13.class", input -> new String(input, StandardCharsets.UTF_8).toUpperCase().getBytes(StandardCharsets.UTF_8),
+			"net/minecraft/Missing.class", input -> {
+				throw new AssertionError("missing entries are not transformed");
+			}));
+		
+		assertEquals(2, transformed);
+		assertEquals(before, names(jar));
+		
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			assertEquals("stored", new String(zip.getInputStream(zip.getEntry("net/minecraft/C0.class")).readAllBytes(), StandardCharsets.UTF_8));
+			assertTrue(new String(zip.getInputStream(zip.getEntry("net/minecraft/C13.class")).readAllBytes(), StandardCharsets.UTF_8).startsWith("ENTRY 13 "));
+			assertTrue(new String(zip.getInputStream(zip.getEntry("net/minecraft/C14.class")).readAllBytes(), StandardCharsets.UTF_8).startsWith("entry 14 "));
+			assertEquals(946684800000L + 13 * 60_000L, zip.getEntry("net/minecraft/C13.class").getTime());
+		}
+	}
+	
+	@Test
+	public void producesReproducibleJars() throws IOException {
+		final List<byte[]> outputs = new ArrayList<>();
+		
+		for (int i = 0; i < 2; i++) {
+			final Path jar = createJar(temp.getRoot().toPath().resolve("minecraft-" + i + ".jar"), 32);
+			JarTransformer.transform(jar, Map.of("net/minecraft/C7.class", input -> new byte[] { 1, 2, 3 }));
+			outputs.add(Files.readAllBytes(jar));
+		}
+		
+		assertArrayEquals(outputs.get(0), outputs.get(1));
+	}
+	
+	@Test
+	public void copiesUntouchedEntriesRaw() throws IOException {
+		final Path jar = createJar(temp.getRoot().toPath().resolve("minecraft.jar"), 16);
+		final byte[] before = Files.readAllBytes(jar);
+		// the first occurrence of the name is in the entry's local header, right after its fixed part
+		final int lastEntryOffset = new String(before, StandardCharsets.ISO_8859_1).indexOf("net/minecraft/C15.class") - 30;
+		
+		JarTransformer.transform(jar, Map.of("net/minecraft/C15.class", input -> "changed".getBytes(StandardCharsets.UTF_8)));
+		final byte[] after = Files.readAllBytes(jar);
+		
+		// everything before the last entry is copied without being recompressed
+		assertEquals(-1, Arrays.mismatch(before, 0, lastEntryOffset, after, 0, lastEntryOffset));
+		
+		// and the local headers still agree with the central directory
+		try (ZipInputStream in = new ZipInputStream(Files.newInputStream(jar))) {
+			ZipEntry entry;
+			int count = 0;
+			while ((entry = in.getNextEntry()) != null) {
+				final String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+				assertEquals(entry.getName().equals("net/minecraft/C15.class") ? "changed" : ("entry " + count + " ").repeat(50 + count), content);
+				count++;
+			}
+			assertEquals(16, count);
+		}
+	}
+	
+	@Test
+	public void leavesTheJarAloneWhenATransformFails() throws IOException {
+		final Path jar = createJar(temp.getRoot().toPath().resolve("minecraft.jar"), 8);
+		final byte[] before = Files.readAllBytes(jar);
+		
+		assertThrows(IOException.class, () -> JarTransformer.transform(jar, Map.of("net/minecraft/C3.class", input -> {
+			throw new IOException("broken class");
+		})));
+		
+		assertArrayEquals(before, Files.readAllBytes(jar));
+		assertEquals(1, temp.getRoot().list().length);
+	}
+	
+}
@@ -0,0 +1,76 @@
+package net.feltmc.spindle.processors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OverlayManifestTest {
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+	
+	@Test
+	public void reusesOutputOnlyWhenInputAndOverlaysMatch() throws IOException {
+		final Path file = OverlayManifest.fileFor(temp.getRoot().toPath().resolve("manifests"), "1.20.1", true, true);
+		final AtomicInteger transforms = new AtomicInteger();
+		
+		final OverlayManifest first = OverlayManifest.load(file);
+		first.apply("A.class", "f1", bytes("a"), in -> { transforms.incrementAndGet(); return bytes("A"); });
+		first.apply("B.class", "f1", bytes("b"), in -> { transforms.incrementAndGet(); return bytes("B"); });
+		first.save();
+		assertEquals(2, transforms.get());
+		
+		final OverlayManifest second = OverlayManifest.load(file);
+		assertArrayEquals(bytes("A"), second.apply("A.class", "f1", bytes("a"), in -> { throw new AssertionError("should be reused"); }));
+		// a changed overlay or a changed input class both transform again
+		assertArrayEquals(bytes("B2"), second.apply("B.class", "f2", bytes("b"), in -> { transforms.incrementAndGet(); return bytes("B2"); }));
+		assertArrayEquals(bytes("A3"), OverlayManifest.load(file).apply("A.class", "f1", bytes("a3"), in -> { transforms.incrementAndGet(); return bytes("A3"); }));
+		assertEquals(4, transforms.get());
+	}
+	
+	@Test
+	public void saveDropsUnusedEntriesAndSkipsUnchangedWrites() throws IOException {
+		final Path file = temp.getRoot().toPath().resolve("minecraft.jar.overlays");
+		
+		final OverlayManifest first = OverlayManifest.load(file);
+		first.apply("A.class", "f", bytes("a"), in -> bytes("A"));
+		first.apply("B.class", "f", bytes("b"), in -> bytes("B"));
+		first.save();
+		final byte[] saved = Files.readAllBytes(file);
+		
+		final OverlayManifest unchanged = OverlayManifest.load(file);
+		unchanged.apply("B.class", "f", bytes("b"), in -> bytes("B"));
+		unchanged.apply("A.class", "f", bytes("a"), in -> bytes("A"));
+		unchanged.save();
+		assertArrayEquals(saved, Files.readAllBytes(file));
+		
+		final OverlayManifest pruned = OverlayManifest.load(file);
+		pruned.apply("A.class", "f", bytes("a"), in -> bytes("A"));
+		pruned.save();
+		
+		final AtomicInteger transforms = new AtomicInteger();
+		OverlayManifest.load(file).apply("B.class", "f", bytes("b"), in -> { transforms.incrementAndGet(); return bytes("B"); });
+		assertEquals(1, transforms.get());
+	}
+	
+	@Test
+	public void ignoresCorruptManifests() throws IOException {
+		final Path file = temp.getRoot().toPath().resolve("minecraft.jar.overlays");
+		Files.write(file, new byte[] { 0x53, 0x50 });
+		
+		assertArrayEquals(bytes("A"), OverlayManifest.load(file).apply("A.class", "f", bytes("a"), in -> bytes("A")));
+	}
+	
+}
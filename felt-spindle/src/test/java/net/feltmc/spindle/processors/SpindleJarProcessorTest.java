@@ -0,0 +1,96 @@
+package net.feltmc.spindle.processors;
+
+import net.feltmc.spindle.access.AccessChanges;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SpindleJarProcessorTest {
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	private static final List<ClassOverlayProcessor.OverlayedClass> OVERLAYS = List.of(
+		new ClassOverlayProcessor.OverlayedClass("mod", "net/minecraft/Entity", List.of(
+			new ClassOverlayProcessor.FieldOverlay("felt$data", Type.INT_TYPE, Opcodes.ACC_PRIVATE),
+			new ClassOverlayProcessor.MethodOverlay("felt$tick", Type.getMethodType("()V"), Opcodes.ACC_PUBLIC))));
+	
+	private static final Map<String, AccessChanges.ClassChanges> CHANGES = AccessChanges.parse(List.of(
+		"accessible class net/minecraft/Entity",
+		"accessible field net/minecraft/Entity id I",
+		"mutable field net/minecraft/Entity id I")).classes();
+	
+	private static byte[] entityClass() {
+		final ClassWriter writer = new ClassWriter(0);
+		writer.visit(Opcodes.V17, Opcodes.ACC_FINAL, "net/minecraft/Entity", null, "java/lang/Object", null);
+		writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "id", "I", null, null).visitEnd();
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+	
+	private static String trace(byte[] bytes) {
+		final StringWriter out = new StringWriter();
+		new ClassReader(bytes).accept(new TraceClassVisitor(new PrintWriter(out)), 0);
+		return out.toString();
+	}
+	
+	@Test
+	public void singlePassMatchesSeparatePasses() {
+		final byte[] separate = SpindleJarProcessor.transform(SpindleJarProcessor.transform(entityClass(), List.of(), CHANGES), OVERLAYS, Map.of());
+		
+		assertEquals(trace(separate), trace(SpindleJarProcessor.transform(entityClass(), OVERLAYS, CHANGES)));
+	}
+	
+	private static Path createJar(Path jar) throws IOException {
+		Files.createDirectories(jar.getParent());
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+			out.putNextEntry(new ZipEntry("net/minecraft/Entity.class"));
+			out.write(entityClass());
+			out.closeEntry();
+		}
+		
+		return jar;
+	}
+	
+	private static byte[] entityOf(Path jar) throws IOException {
+		try (ZipFile zip = new ZipFile(jar.toFile())) {
+			return zip.getInputStream(zip.getEntry("net/minecraft/Entity.class")).readAllBytes();
+		}
+	}
+	
+	@Test
+	public void reusesOutputWhenTheJarMoves() throws IOException {
+		// Loom names the processed jar after the spec, so a changed spec always means a new jar path
+		final Path manifest = OverlayManifest.fileFor(temp.getRoot().toPath().resolve("loom-cache/felt-spindle"), "1.20.1", true, true);
+		final Path first = createJar(temp.getRoot().toPath().resolve("first/minecraft-merged-1.jar"));
+		final Path second = createJar(temp.getRoot().toPath().resolve("second/minecraft-merged-2.jar"));
+		
+		assertEquals(0, SpindleJarProcessor.process(first, manifest, OVERLAYS, CHANGES, "access"));
+		assertEquals(1, SpindleJarProcessor.process(second, manifest, OVERLAYS, CHANGES, "access"));
+		assertArrayEquals(entityOf(first), entityOf(second));
+		
+		// while different access changes transform it again
+		final Path third = createJar(temp.getRoot().toPath().resolve("third/minecraft-merged-3.jar"));
+		assertEquals(0, SpindleJarProcessor.process(third, manifest, OVERLAYS, CHANGES, "changed access"));
+	}
+	
+}
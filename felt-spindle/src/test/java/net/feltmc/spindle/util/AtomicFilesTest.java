@@ -0,0 +1,51 @@
+package net.feltmc.spindle.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+public class AtomicFilesTest {
+	
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+	
+	@Test
+	public void leavesIdenticalFilesUntouched() throws IOException {
+		final Path target = temp.newFile("mod.accesswidener").toPath();
+		Files.writeString(target, "accessWidener v2 named\n");
+		final FileTime modified = FileTime.fromMillis(0);
+		Files.setLastModifiedTime(target, modified);
+		
+		final Path source = AtomicFiles.createSibling(target);
+		Files.writeString(source, "accessWidener v2 named\n");
+		
+		assertFalse(AtomicFiles.replaceIfChanged(source, target));
+		assertEquals(modified, Files.getLastModifiedTime(target));
+		assertFalse(Files.exists(source));
+	}
+	
+	@Test
+	public void replacesChangedAndMissingFiles() throws IOException {
+		final Path target = temp.getRoot().toPath().resolve("mod.accesswidener");
+		
+		Path source = AtomicFiles.createSibling(target);
+		Files.writeString(source, "accessWidener v2 named\n");
+		assertTrue(AtomicFiles.replaceIfChanged(source, target));
+		
+		source = AtomicFiles.createSibling(target);
+		Files.writeString(source, "accessWidener v2 named\naccessible class a\n");
+		assertTrue(AtomicFiles.replaceIfChanged(source, target));
+		
+		assertEquals("accessWidener v2 named\naccessible class a\n", Files.readString(target));
+		assertFalse(Files.exists(source));
+		assertEquals(1, temp.getRoot().list().length);
+	}
+	
+}
@@ -0,0 +1,69 @@
+package net.feltmc.spindle.util;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class DescriptorRemapperTest {
+	
+	private static final Map<String, String> NAMES = Map.of(
+		"a", "net/minecraft/world/entity/Entity",
+		"b", "net/minecraft/world/level/Level",
+		"b$c", "net/minecraft/world/level/Level$Inner",
+		"L", "net/minecraft/Renamed");
+	
+	private final DescriptorRemapper remapper = new DescriptorRemapper(NAMES::get);
+	
+	@Test
+	public void mapsDescriptors() {
+		assertEquals("(Lnet/minecraft/world/entity/Entity;I[[Lnet/minecraft/world/level/Level;)V", remapper.map("(La;I[[Lb;)V"));
+		assertEquals("Ljava/lang/String;", remapper.map("Ljava/lang/String;"));
+		assertEquals("[J", remapper.map("[J"));
+	}
+	
+	@Test
+	public void mapsGenericSignatures() {
+		assertEquals("Ljava/util/List<+Lnet/minecraft/world/entity/Entity;>;", remapper.map("Ljava/util/List<+La;>;"));
+		assertEquals("Lnet/minecraft/world/level/Level<*>.Inner<TL;>;", remapper.map("Lb<*>.c<TL;>;"));
+		// type variable and type parameter names are never class names, even if they start with an L
+		assertEquals("<L:Lnet/minecraft/world/entity/Entity;>(TL;)Ljava/util/Map<TL;Lnet/minecraft/world/level/Level;>;^Ljava/io/IOException;",
+			remapper.map("<L:La;>(TL;)Ljava/util/Map<TL;Lb;>;^Ljava/io/IOException;"));
+		assertEquals("<T::Ljava/lang/Comparable<TT;>;>Ljava/lang/Object;", remapper.map("<T::Ljava/lang/Comparable<TT;>;>Ljava/lang/Object;"));
+	}
+	
+	@Test
+	public void memoizesClassNamesAndDescriptors() {
+		final AtomicInteger lookups = new AtomicInteger();
+		final DescriptorRemapper counting = new DescriptorRemapper(name -> {
+			lookups.incrementAndGet();
+			return NAMES.get(name);
+		});
+		
+		final String first = counting.map("(La;La;)La;");
+		assertEquals(1, lookups.get());
+		assertSame(first, counting.map("(La;La;)La;"));
+		assertEquals("(Lnet/minecraft/world/entity/Entity;)V", counting.map("(La;)V"));
+		assertEquals(1, lookups.get());
+	}
+	
+	@Test
+	public void memoizesInnerClassesByTheirOuterName() {
+		final AtomicInteger lookups = new AtomicInteger();
+		final DescriptorRemapper counting = new DescriptorRemapper(name -> {
+			lookups.incrementAndGet();
+			return NAMES.get(name);
+		});
+		
+		assertEquals("Lnet/minecraft/world/level/Level<*>.Inner.d;", counting.map("Lb<*>.c.d;"));
+		assertEquals(3, lookups.get());
+		// the same classes, in a signature that isn't memoized yet
+		assertEquals("(Lnet/minecraft/world/level/Level<TL;>.Inner.d;)V", counting.map("(Lb<TL;>.c.d;)V"));
+		assertEquals("net/minecraft/world/level/Level$Inner", counting.mapClassName("b$c"));
+		assertEquals(3, lookups.get());
+	}
+	
+}
@@ -0,0 +1,213 @@
+package net.feltmc.spindle.fixtures;
+
+import net.feltmc.spindle.mapping.Mappings;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates mappings shaped like Minecraft's, in every format Spindle reads, and a jar of classes
+ * with their named names, so the benchmarks and performance tests never download anything.
+ * <p>
+ * There are {@link #CLASSES} classes with {@link #FIELDS} fields and {@link #METHODS} methods each,
+ * roughly the size of a recent version. Every method takes another class, and every other field is
+ * of another class, so descriptors have to be mapped as well.
+ */
+public final class Fixtures {
+	
+	public static final int CLASSES = 8000;
+	public static final int FIELDS = 8;
+	public static final int METHODS = 12;
+	public static final String MC_VERSION = "benchmark";
+	
+	private Fixtures() {
+	}
+	
+	public static String obfClass(int c) {
+		return "c" + c;
+	}
+	
+	public static String namedClass(int c) {
+		return "net/minecraft/p" + c % 64 + "/Class" + c;
+	}
+	
+	public static String obfField(int f) {
+		return "f" + f;
+	}
+	
+	public static String srgField(int c, int f) {
+		return "f_" + c + "_" + f + "_";
+	}
+	
+	public static String namedField(int f) {
+		return "field" + f;
+	}
+	
+	public static String obfMethod(int m) {
+		return "m" + m;
+	}
+	
+	public static String srgMethod(int c, int m) {
+		return "m_" + c + "_" + m + "_";
+	}
+	
+	public static String namedMethod(int m) {
+		return "method" + m;
+	}
+	
+	private static int fieldType(int c, int f) {
+		return f % 2 == 0 ? -1 : (c + f) % CLASSES;
+	}
+	
+	private static int parameterType(int c, int m) {
+		return (c * 31 + m * 17) % CLASSES;
+	}
+	
+	public static String obfFieldDesc(int c, int f) {
+		return fieldType(c, f) == -1 ? "I" : "L" + obfClass(fieldType(c, f)) + ";";
+	}
+	
+	public static String obfMethodDesc(int c, int m) {
+		return "(L" + obfClass(parameterType(c, m)) + ";I)V";
+	}
+	
+	public static String namedMethodDesc(int c, int m) {
+		return "(L" + namedClass(parameterType(c, m)) + ";I)V";
+	}
+	
+	/**
+	 * Writes the project mappings, mojmap and SRG files to {@code dir}.
+	 *
+	 * @return the sources of the mappings, pointing at the written files
+	 */
+	public static Mappings.Sources writeSources(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		final Path tiny = dir.resolve("mappings.tiny");
+		final Path tsrg = dir.resolve("joined.tsrg");
+		final Path proGuard = dir.resolve("client.txt");
+		writeTiny(tiny);
+		writeTsrg(tsrg);
+		writeProGuard(proGuard);
+		
+		return new Mappings.Sources(tiny.toFile(), MC_VERSION, new Mappings.Download(tsrg.toUri().toString(), null),
+			new Mappings.Download(proGuard.toUri().toString(), null), new Mappings.Download(proGuard.toUri().toString(), null));
+	}
+	
+	public static void writeTiny(Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("tiny\t2\t0\tofficial\tintermediary\tnamed\n");
+			for (int c = 0; c < CLASSES; c++) {
+				writer.write("c\t" + obfClass(c) + "\tnet/minecraft/class_" + c + "\t" + namedClass(c) + "\n");
+				for (int f = 0; f < FIELDS; f++)
+					writer.write("\tf\t" + obfFieldDesc(c, f) + "\t" + obfField(f) + "\tfield_" + (c * FIELDS + f) + "\t" + namedField(f) + "\n");
+				for (int m = 0; m < METHODS; m++)
+					writer.write("\tm\t" + obfMethodDesc(c, m) + "\t" + obfMethod(m) + "\tmethod_" + (c * METHODS + m) + "\t" + namedMethod(m) + "\n");
+			}
+		}
+	}
+	
+	public static void writeTsrg(Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			writer.write("tsrg2 obf srg\n");
+			for (int c = 0; c < CLASSES; c++) {
+				writer.write(obfClass(c) + " " + namedClass(c) + "\n");
+				for (int f = 0; f < FIELDS; f++)
+					writer.write("\t" + obfField(f) + " " + srgField(c, f) + "\n");
+				for (int m = 0; m < METHODS; m++)
+					writer.write("\t" + obfMethod(m) + " " + obfMethodDesc(c, m) + " " + srgMethod(c, m) + "\n");
+			}
+		}
+	}
+	
+	public static void writeProGuard(Path file) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+			for (int c = 0; c < CLASSES; c++) {
+				writer.write(namedClass(c).replace('/', '.') + " -> " + obfClass(c) + ":\n");
+				for (int f = 0; f < FIELDS; f++) {
+					final String type = fieldType(c, f) == -1 ? "int" : namedClass(fieldType(c, f)).replace('/', '.');
+					writer.write("    " + type + " " + namedField(f) + " -> " + obfField(f) + "\n");
+				}
+				for (int m = 0; m < METHODS; m++)
+					writer.write("    1:1:void " + namedMethod(m) + "(" + namedClass(parameterType(c, m)).replace('/', '.') + ",int) -> " + obfMethod(m) + "\n");
+			}
+		}
+	}
+	
+	/**
+	 * @return an access transformer of {@code lines} entries spread over all classes: a fifth of them
+	 * classes, the rest split between fields and methods
+	 */
+	public static List<String> accessTransformer(int lines) {
+		final List<String> result = new ArrayList<>(lines);
+		for (int i = 0; i < lines; i++) {
+			final int c = (int) ((long) i * 7919 % CLASSES);
+			final String className = namedClass(c).replace('/', '.');
+			
+			switch (i % 5) {
+				case 0 -> result.add("public-f " + className);
+				case 1, 2 -> result.add("public-f " + className + " " + srgField(c, i % FIELDS) + " # " + namedField(i % FIELDS));
+				default -> result.add("public " + className + " " + srgMethod(c, i % METHODS) + namedMethodDesc(c, i % METHODS));
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @return a class named {@code namedClass(c)} with all of its fields, and methods reading them
+	 */
+	public static byte[] namedClassBytes(int c) {
+		final String name = namedClass(c);
+		final ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		writer.visit(Opcodes.V17, Opcodes.ACC_PUBLIC, name, null, "java/lang/Object", null);
+		
+		for (int f = 0; f < FIELDS; f++)
+			writer.visitField(Opcodes.ACC_PRIVATE, namedField(f), "I", null, null).visitEnd();
+		
+		for (int m = 0; m < METHODS; m++) {
+			final MethodVisitor method = writer.visitMethod(Opcodes.ACC_PUBLIC, namedMethod(m), "()I", null, null);
+			method.visitCode();
+			method.visitVarInsn(Opcodes.ALOAD, 0);
+			method.visitFieldInsn(Opcodes.GETFIELD, name, namedField(m % FIELDS), "I");
+			method.visitInsn(Opcodes.IRETURN);
+			method.visitMaxs(0, 0);
+			method.visitEnd();
+		}
+		
+		writer.visitEnd();
+		return writer.toByteArray();
+	}
+	
+	/**
+	 * Writes a jar of all {@link #CLASSES} classes, as {@link #namedClassBytes(int)} generates them.
+	 */
+	public static void writeJar(Path jar) throws IOException {
+		Files.createDirectories(jar.getParent());
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+			for (int c = 0; c < CLASSES; c++) {
+				out.putNextEntry(new ZipEntry(namedClass(c) + ".class"));
+				out.write(namedClassBytes(c));
+				out.closeEntry();
+			}
+		}
+	}
+	
+	public static void delete(Path dir) throws IOException {
+		try (Stream<Path> files = Files.walk(dir)) {
+			for (Path file : files.sorted(Comparator.reverseOrder()).toList())
+				Files.delete(file);
+		}
+	}
+	
+}